@@ -13,6 +13,9 @@ plugins {
     // Applies the Google Services Gradle plugin for Firebase integration.
     id("com.google.gms.google-services") // Add the Google services Gradle plugin
     //-------------------------------//
+
+    // Packages the Baseline Profile generated by the macrobenchmark module into release builds.
+    alias(libs.plugins.baselineprofile)
 }
 
 android {
@@ -35,6 +38,11 @@ android {
 
         // Specifies the instrumentation runner for Android tests.
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Host of a local Firestore emulator to use instead of the project, empty for the project.
+        // Set with -PfirestoreEmulatorHost=10.0.2.2 (the host machine seen from an Android emulator) for the benchmarks.
+        buildConfigField("String", "FIRESTORE_EMULATOR_HOST",
+            "\"${project.findProperty("firestoreEmulatorHost") ?: ""}\"")
     }
 
     buildTypes {
@@ -44,6 +52,14 @@ android {
             // Specifies ProGuard rules files for code shrinking and obfuscation.
             proguardFiles(getDefaultProguardFile("proguard-android-optimize.txt"), "proguard-rules.pro")
         }
+
+        // Release build for the microbenchmark module: not debuggable, so that it runs as users get it,
+        // but signed with the debug key so that the benchmark APK can instrument it.
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
 
     compileOptions {
@@ -55,6 +71,7 @@ android {
     buildFeatures {
         // Enables View Binding, which generates binding classes for your XML layouts.
         viewBinding = true // Connects layout XML directly to Java code without findViewById
+        buildConfig = true // Generates BuildConfig, which carries the Firestore emulator host
     }
 }
 
@@ -65,6 +82,8 @@ dependencies {
     implementation(libs.activity) // Support library for Android activities
     implementation(libs.constraintlayout) // Enables complex layouts with a flat view hierarchy
     implementation(libs.roundedimageview) // Library for displaying images with rounded corners
+    implementation(libs.work.runtime) // WorkManager for deferred work that survives process death
+    implementation(libs.profileinstaller) // Installs the Baseline Profile on devices not served by Play
 
     //------ Firebase setup ---------//
     implementation(libs.firebase.bom) // Firebase BoM to manage Firebase dependencies' versions
@@ -72,6 +91,9 @@ dependencies {
     implementation(libs.firebase.firestore) // Firebase Cloud Firestore for real-time database
     //-------------------------------//
 
+    // Generates the Baseline Profile with ./gradlew :app:generateBaselineProfile
+    baselineProfile(project(":macrobenchmark"))
+
     // Testing libraries
     testImplementation(libs.junit) // JUnit framework for unit tests
     androidTestImplementation(libs.ext.junit) // AndroidX extensions for JUnit
@@ -0,0 +1,173 @@
+package com.example.chatandroidapp.firebase;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.ImageImporter;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Signs up and signs in against a local Firestore emulator, started beforehand with
+ * {@code firebase emulators:start --only firestore}. 10.0.2.2 is the host machine seen from an Android emulator.
+ * Every test uses emails of its own, so that runs against the same emulator do not see each other's accounts.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CredentialStoreEmulatorTest {
+
+    private static final String APP_NAME = "credentials-emulator"; // Kept apart from the default app
+    private static final String PASSWORD = "correct horse";
+    private static final int CONCURRENT_SIGN_UPS = 5; // One hashing and four queued, the most the hash executor accepts
+
+    private FirebaseFirestore database;
+    private String run;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app;
+        try {
+            app = FirebaseApp.getInstance(APP_NAME);
+        } catch (IllegalStateException e) {
+            app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), APP_NAME);
+            FirebaseFirestore.getInstance(app).useEmulator("10.0.2.2", 8080);
+        }
+        database = FirebaseFirestore.getInstance(app);
+        run = UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Test
+    public void signIn_hashedCredentials_returnsUser() throws Exception {
+        DocumentReference user = createHashedAccount("hashed");
+
+        DocumentSnapshot signedIn = await(CredentialStore.signIn(database, " Hashed-" + run + "@Example.com ", PASSWORD));
+
+        assertNotNull(signedIn);
+        assertEquals(user.getId(), signedIn.getId());
+    }
+
+    @Test
+    public void signIn_wrongPassword_returnsNull() throws Exception {
+        createHashedAccount("wrong");
+
+        assertNull(await(CredentialStore.signIn(database, emailOf("wrong"), PASSWORD + "!")));
+    }
+
+    @Test
+    public void signIn_unknownEmail_returnsNull() throws Exception {
+        assertNull(await(CredentialStore.signIn(database, emailOf("unknown"), PASSWORD)));
+    }
+
+    @Test
+    public void signIn_legacyAccount_movesToHashedCredentials() throws Exception {
+        String email = emailOf("legacy");
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(Constants.KEY_NAME, "Legacy");
+        fields.put(Constants.KEY_EMAIL, email);
+        fields.put(Constants.KEY_PASSWORD, PASSWORD);
+        DocumentReference user = database.collection(Constants.KEY_COLLECTION_USERS).document();
+        await(user.set(fields));
+
+        DocumentSnapshot signedIn = await(CredentialStore.signIn(database, email, PASSWORD));
+
+        assertNotNull(signedIn);
+        assertEquals(user.getId(), signedIn.getId());
+        DocumentSnapshot credentials = await(CredentialStore.reference(database, email).get(Source.SERVER));
+        assertEquals(user.getId(), credentials.getString(Constants.KEY_USER_ID));
+        assertNotNull(credentials.getString(Constants.KEY_PASSWORD_HASH));
+        assertFalse(await(user.get(Source.SERVER)).contains(Constants.KEY_PASSWORD));
+
+        // The plaintext is gone, so the second sign-in can only succeed through the hashed credentials
+        DocumentSnapshot again = await(CredentialStore.signIn(database, email, PASSWORD));
+        assertNotNull(again);
+        assertEquals(user.getId(), again.getId());
+        assertNull(await(CredentialStore.signIn(database, email, PASSWORD + "!")));
+    }
+
+    @Test
+    public void register_concurrentSameEmail_onlyOneSucceeds() throws Exception {
+        ImageImporter.Variants avatar = new ImageImporter.Variants(new byte[]{1}, new byte[]{2}, new byte[]{3}, null);
+        List<DocumentReference> users = new ArrayList<>();
+        List<Task<Void>> registrations = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_SIGN_UPS; i++) {
+            // The same address as typed in different ways, which all normalize to one credentials document
+            String email = (i % 2 == 0 ? " " : "") + (i % 3 == 0 ? "Racer-" : "racer-") + run + "@example.com";
+            Map<String, Object> fields = new HashMap<>();
+            fields.put(Constants.KEY_NAME, "Racer " + i);
+            fields.put(Constants.KEY_EMAIL, CredentialStore.normalizeEmail(email));
+            DocumentReference user = database.collection(Constants.KEY_COLLECTION_USERS).document();
+            users.add(user);
+            registrations.add(CredentialStore.register(database, user, fields, email, PASSWORD, avatar, "0123456789abcdef"));
+        }
+        try {
+            Tasks.await(Tasks.whenAllComplete(registrations), 60, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // Failures are checked one by one below
+        }
+
+        DocumentReference winner = null;
+        for (int i = 0; i < CONCURRENT_SIGN_UPS; i++) {
+            Task<Void> registration = registrations.get(i);
+            if (registration.isSuccessful()) {
+                assertNull("More than one sign-up succeeded", winner);
+                winner = users.get(i);
+            } else {
+                assertTrue(String.valueOf(registration.getException()),
+                        CredentialStore.isEmailTaken(registration.getException()));
+            }
+        }
+        assertNotNull("No sign-up succeeded", winner);
+
+        // One credentials document, pointing at the only user document written
+        DocumentSnapshot credentials = await(CredentialStore.reference(database, emailOf("racer")).get(Source.SERVER));
+        assertEquals(winner.getId(), credentials.getString(Constants.KEY_USER_ID));
+        assertEquals(1, await(database.collection(Constants.KEY_COLLECTION_EMAILS)
+                .whereEqualTo(Constants.KEY_USER_ID, winner.getId()).get(Source.SERVER)).size());
+        for (DocumentReference user : users) {
+            assertEquals(user.equals(winner), await(user.get(Source.SERVER)).exists());
+        }
+    }
+
+    /**
+     * Writes a user document and its credentials document, as sign-up does.
+     */
+    private DocumentReference createHashedAccount(String name) throws Exception {
+        DocumentReference user = database.collection(Constants.KEY_COLLECTION_USERS).document();
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(Constants.KEY_NAME, name);
+        fields.put(Constants.KEY_EMAIL, emailOf(name));
+        await(user.set(fields));
+        await(CredentialStore.reference(database, emailOf(name))
+                .set(await(CredentialStore.newCredentials(user.getId(), PASSWORD))));
+        return user;
+    }
+
+    private String emailOf(String name) {
+        return name + "-" + run + "@example.com";
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, 60, TimeUnit.SECONDS);
+    }
+}
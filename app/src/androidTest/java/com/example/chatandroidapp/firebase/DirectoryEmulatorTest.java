@@ -0,0 +1,112 @@
+package com.example.chatandroidapp.firebase;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a directory of 10,000 users seeded in a local Firestore emulator, started beforehand with
+ * {@code firebase emulators:start --only firestore}. 10.0.2.2 is the host machine seen from an Android emulator.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DirectoryEmulatorTest {
+
+    private static final String TAG = "DirectoryEmulatorTest";
+    private static final String APP_NAME = "directory-emulator"; // Kept apart from the default app
+    private static final int USERS = 10_000;
+    private static final int MAX_SHARD_BYTES = 1024 * 1024; // Firestore document limit
+
+    private FirebaseFirestore database;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app;
+        try {
+            app = FirebaseApp.getInstance(APP_NAME);
+        } catch (IllegalStateException e) {
+            app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), APP_NAME);
+            FirebaseFirestore.getInstance(app).useEmulator("10.0.2.2", 8080);
+        }
+        database = FirebaseFirestore.getInstance(app);
+        seed();
+    }
+
+    @Test
+    public void tenThousandUsers_loadInOneReadPerShard() throws Exception {
+        long start = System.nanoTime();
+        QuerySnapshot shards = Tasks.await(Directory.shards(database).get(Source.SERVER), 60, TimeUnit.SECONDS);
+        int users = 0;
+        for (DocumentSnapshot shard : shards.getDocuments()) {
+            for (User user : Directory.toUsers(shard)) {
+                assertNotNull(user.name);
+                users++;
+            }
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Log.i(TAG, "Loaded " + users + " users from " + shards.size() + " shards in " + elapsedMillis + " ms");
+
+        assertTrue(shards.size() <= Constants.DIRECTORY_SHARD_COUNT);
+        assertEquals(USERS, users);
+    }
+
+    /**
+     * Writes the entries of 10,000 users, shard by shard, as sign-ups would have.
+     */
+    private void seed() throws Exception {
+        Map<Integer, Map<String, Object>> entriesByShard = new HashMap<>();
+        int largestShard = 0;
+        for (int i = 0; i < USERS; i++) {
+            String userId = String.format("user%05d", i);
+            Map<String, Object> entry = new HashMap<>();
+            entry.put(Constants.KEY_NAME, "User " + i);
+            entry.put(Constants.KEY_EMAIL, userId + "@example.com");
+            entry.put(Constants.KEY_IMAGE_HASH, String.format("%016x", i)); // Length of the hashes of AvatarStore
+
+            Map<String, Object> entries = entriesByShard.get(Directory.shardIndexOf(userId));
+            if (entries == null) {
+                entries = new HashMap<>();
+                entriesByShard.put(Directory.shardIndexOf(userId), entries);
+            }
+            entries.put(userId, entry);
+            largestShard = Math.max(largestShard, entries.size());
+        }
+        // Roughly 150 bytes per entry: name, email, hash and the field names
+        assertTrue("Shard of " + largestShard + " entries may exceed a document", largestShard * 150 < MAX_SHARD_BYTES);
+
+        // One write per shard: together they exceed the size of a single commit
+        List<Task<Void>> writes = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, Object>> shard : entriesByShard.entrySet()) {
+            Map<String, Object> document = new HashMap<>();
+            document.put(Constants.KEY_ENTRIES, shard.getValue());
+            document.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+            writes.add(Directory.shards(database).document(String.valueOf(shard.getKey())).set(document));
+        }
+        Tasks.await(Tasks.whenAll(writes), 60, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.chatandroidapp.utilities;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.database.CostStore;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Counts the reads of queries against a local Firestore emulator, started beforehand with
+ * {@code firebase emulators:start --only firestore}. 10.0.2.2 is the host machine seen from an Android emulator.
+ * The application installs {@link CostMeter} as the listener of {@link TaskTracer} when it starts.
+ * CostMeter records a call after it completes, on another thread, so totals are polled until they are reached.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CostMeterEmulatorTest {
+
+    private static final String APP_NAME = "cost-emulator"; // Kept apart from the default app
+    private static final String COLLECTION = "costMeterTest";
+    private static final String SCREEN = "background"; // No activity is shown during the test
+    private static final int DOCUMENTS = 250; // More than the read budget of the user list
+    private static final long POLL_TIMEOUT_MILLIS = 10_000;
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private Context context;
+    private FirebaseFirestore database;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app;
+        try {
+            app = FirebaseApp.getInstance(APP_NAME);
+        } catch (IllegalStateException e) {
+            app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), APP_NAME);
+            FirebaseFirestore.getInstance(app).useEmulator("10.0.2.2", 8080);
+        }
+        database = FirebaseFirestore.getInstance(app);
+        seed();
+    }
+
+    @Test
+    public void serverQuery_countsOneReadPerDocument() throws Exception {
+        long before = readsOf("test.server");
+
+        await(TaskTracer.trace("test.server", database.collection(COLLECTION).get(Source.SERVER)));
+
+        assertEquals(DOCUMENTS, poll(() -> readsOf("test.server") - before, DOCUMENTS));
+        assertTrue(DOCUMENTS > Constants.READ_BUDGET_USER_LIST);
+    }
+
+    @Test
+    public void emptyServerQuery_countsOneRead() throws Exception {
+        long before = readsOf("test.empty");
+
+        Query nothing = database.collection(COLLECTION).whereEqualTo(Constants.KEY_NAME, "nobody");
+        await(TaskTracer.trace("test.empty", nothing.get(Source.SERVER)));
+
+        assertEquals(1, poll(() -> readsOf("test.empty") - before, 1));
+    }
+
+    @Test
+    public void cacheQuery_countsNothing() throws Exception {
+        await(database.collection(COLLECTION).get(Source.SERVER)); // Fills the cache
+        long before = readsOf("test.cache");
+
+        await(TaskTracer.trace("test.cache", database.collection(COLLECTION).get(Source.CACHE)));
+
+        // Nothing is expected, so a later call is awaited instead: once it is recorded, the cache query was too
+        long sentinelBefore = readsOf("test.cacheSentinel");
+        Query nothing = database.collection(COLLECTION).whereEqualTo(Constants.KEY_NAME, "nobody");
+        await(TaskTracer.trace("test.cacheSentinel", nothing.get(Source.SERVER)));
+        assertEquals(1, poll(() -> readsOf("test.cacheSentinel") - sentinelBefore, 1));
+        assertEquals(0, readsOf("test.cache") - before);
+    }
+
+    @Test
+    public void write_countsDeclaredWrites() throws Exception {
+        long before = writesOf("test.write");
+
+        Map<String, Object> document = new HashMap<>();
+        document.put(Constants.KEY_NAME, "Written");
+        await(TaskTracer.trace("test.write", database.collection(COLLECTION).document("written").set(document), 1));
+
+        assertEquals(1, poll(() -> writesOf("test.write") - before, 1));
+    }
+
+    private void seed() throws Exception {
+        WriteBatch batch = database.batch();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Map<String, Object> document = new HashMap<>();
+            document.put(Constants.KEY_NAME, "User " + i);
+            batch.set(database.collection(COLLECTION).document(String.format("user%05d", i)), document);
+        }
+        await(batch.commit());
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reads a count until it reaches the expected value or the timeout passes.
+     *
+     * @return The last value read, which a caller compares with the expected one.
+     */
+    private static long poll(Callable<Long> count, long expected) throws Exception {
+        long deadline = SystemClock.uptimeMillis() + POLL_TIMEOUT_MILLIS;
+        long value = count.call();
+        while (value < expected && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(POLL_INTERVAL_MILLIS);
+            value = count.call();
+        }
+        return value;
+    }
+
+    private long readsOf(String operation) throws Exception {
+        CostStore.Total total = totalOf(operation);
+        return total != null ? total.reads : 0;
+    }
+
+    private long writesOf(String operation) throws Exception {
+        CostStore.Total total = totalOf(operation);
+        return total != null ? total.writes : 0;
+    }
+
+    private CostStore.Total totalOf(String operation) throws Exception {
+        String today = String.format(Locale.US, "%tF", Calendar.getInstance());
+        return AppExecutors.diskIO().submit(() -> {
+            for (CostStore.Total total : new CostStore(context).getTotals(today)) {
+                if (total.screen.equals(SCREEN) && total.operation.equals(operation)) {
+                    return total;
+                }
+            }
+            return null;
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.chatandroidapp;
+
+import android.app.Application;
+import android.util.Base64;
+
+import com.example.chatandroidapp.firebase.AvatarStore;
+import com.example.chatandroidapp.firebase.MessageOutbox;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.AvatarCache;
+import com.example.chatandroidapp.utilities.BlobStore;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.CostMeter;
+import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.concurrent.Future;
+
+/**
+ * ChatApplication is the application class of the chat application.
+ * It starts loading the stored session as soon as the process starts, so that the launcher activity
+ * can decide where to route the user without waiting on disk.
+ */
+public class ChatApplication extends Application {
+
+    private static final int FIRESTORE_EMULATOR_PORT = 8080; // Default port of the Firestore emulator
+
+    private Future<?> profileImageMigration; // Done once a legacy avatar has left the preferences
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Benchmark builds may run against a seeded local emulator; must precede any other use of Firestore
+        if (!BuildConfig.FIRESTORE_EMULATOR_HOST.isEmpty()) {
+            FirebaseFirestore.getInstance().useEmulator(BuildConfig.FIRESTORE_EMULATOR_HOST, FIRESTORE_EMULATOR_PORT);
+        }
+        // Account for the Firestore usage of each screen
+        CostMeter costMeter = CostMeter.getInstance(this);
+        TaskTracer.setListener(costMeter);
+        registerActivityLifecycleCallbacks(costMeter);
+        // Load the stored session into memory before the first activity reads it
+        PreferenceManager.preload(this);
+        // Move a legacy avatar out of the preferences; the main screen waits on it before showing the avatar
+        profileImageMigration = AppExecutors.diskIO().submit(this::migrateProfileImage);
+        // Deliver the messages a previous process queued but did not get to schedule
+        MessageOutbox.getInstance(this).resume();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Debug builds log the latency and cost of the backend calls each time the app leaves the screen
+        if (BuildConfig.DEBUG && level == TRIM_MEMORY_UI_HIDDEN) {
+            TaskTracer.dump();
+            AppExecutors.diskRead().execute(CostMeter.getInstance(this)::logTotals);
+        }
+    }
+
+    /**
+     * @return The move of a legacy avatar out of the preferences, done once KEY_IMAGE_HASH can be read.
+     * Waiting on it blocks, so it must be done off the main thread.
+     */
+    public Future<?> getProfileImageMigration() {
+        return profileImageMigration;
+    }
+
+    /**
+     * Moves the Base64 avatar that earlier versions stored in the preferences into the BlobStore,
+     * leaving only its hash in the preferences, so that the preferences file stays small to parse.
+     */
+    private void migrateProfileImage() {
+        PreferenceManager preferenceManager = new PreferenceManager(this);
+        String encodedImage = preferenceManager.getString(Constants.KEY_IMAGE);
+        String userId = preferenceManager.getString(Constants.KEY_USER_ID);
+        if (encodedImage == null) {
+            return;
+        }
+
+        PreferenceManager.Editor editor = preferenceManager.edit().remove(Constants.KEY_IMAGE);
+        if (userId != null && !encodedImage.isEmpty()) {
+            byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+            String imageHash = AvatarStore.hashOf(bytes);
+            if (!BlobStore.getInstance(this).put(AvatarCache.keyOf(userId, imageHash), bytes)) {
+                return; // Keep the image in the preferences and try again on the next start
+            }
+            editor.putString(Constants.KEY_IMAGE_HASH, imageHash);
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.chatandroidapp.activities;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatandroidapp.adapters.ChatAdapter;
+import com.example.chatandroidapp.databinding.ActivityChatBinding;
+import com.example.chatandroidapp.firebase.Conversations;
+import com.example.chatandroidapp.firebase.Inbox;
+import com.example.chatandroidapp.firebase.MessageIngestor;
+import com.example.chatandroidapp.firebase.MessageOutbox;
+import com.example.chatandroidapp.firebase.MessagesWindow;
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.ToastType;
+import com.example.chatandroidapp.utilities.Utilities;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ChatActivity shows the one-to-one conversation between the signed-in user and the user passed
+ * in its Intent under {@link Constants#KEY_USER}.
+ * The history is read through a {@link MessagesWindow}: the newest page first, then older or newer
+ * pages as the user scrolls, with only a bounded window of messages held in memory.
+ * Sent messages go through the {@link MessageOutbox} and are shown at once, dimmed, until they
+ * appear in the window, or marked as not sent if the server refused them.
+ */
+public class ChatActivity extends AppCompatActivity implements MessagesWindow.Listener {
+    private ActivityChatBinding binding;
+    private PreferenceManager preferenceManager;
+    private LinearLayoutManager layoutManager;
+    private ChatAdapter chatAdapter;
+    private MessagesWindow messagesWindow;
+    private FirebaseFirestore database;
+
+    private User receiver; // The other participant of the conversation
+    private String conversationId;
+
+    private List<ChatMessage> windowMessages = new ArrayList<>(); // Last messages published by the window
+    private boolean isAtLatest; // True if the window reaches the newest message of the conversation
+    private final List<ChatMessage> pendingMessages = new ArrayList<>(); // Sent, not yet in the window
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityChatBinding.inflate(getLayoutInflater());
+        preferenceManager = new PreferenceManager(getApplicationContext());
+        database = FirebaseFirestore.getInstance();
+
+        receiver = (User) getIntent().getSerializableExtra(Constants.KEY_USER);
+        String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID);
+        if (receiver == null || currentUserId == null) {
+            // Opened from a notification posted before a sign-out: the main screen below it has no session either
+            startActivity(new Intent(getApplicationContext(), SignInActivity.class)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK));
+            finish();
+            return;
+        }
+        conversationId = Conversations.idOf(currentUserId, receiver.id);
+
+        setContentView(binding.getRoot());
+        binding.textName.setText(receiver.name);
+
+        // The newest message sits at the bottom, as in any chat
+        layoutManager = new LinearLayoutManager(this);
+        layoutManager.setStackFromEnd(true);
+        chatAdapter = new ChatAdapter(currentUserId);
+        binding.chatRecyclerView.setLayoutManager(layoutManager);
+        binding.chatRecyclerView.setAdapter(chatAdapter);
+        setListeners();
+
+        messagesWindow = new MessagesWindow(Conversations.messages(database, conversationId),
+                Constants.MESSAGES_PAGE_SIZE, Constants.MESSAGES_WINDOW_SIZE, this);
+        messagesWindow.start();
+        loadPendingMessages();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // The user is reading the conversation, its notification and unread count are no longer needed
+        MessageIngestor.getInstance(getApplicationContext()).clear(conversationId);
+        Inbox.markRead(database, preferenceManager.getString(Constants.KEY_USER_ID), receiver.id);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (messagesWindow != null) {
+            messagesWindow.stop();
+        }
+    }
+
+    private void setListeners() {
+        binding.imageBack.setOnClickListener(v -> onBackPressed());
+        binding.imageSend.setOnClickListener(v -> sendMessage());
+        binding.inputMessage.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEND) {
+                sendMessage();
+                return true;
+            }
+            return false;
+        });
+
+        // Read the next page before the user reaches either end of the window
+        binding.chatRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= Constants.MESSAGES_PREFETCH_DISTANCE) {
+                    messagesWindow.loadOlder();
+                } else if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= chatAdapter.getItemCount() - 1 - Constants.MESSAGES_PREFETCH_DISTANCE) {
+                    messagesWindow.loadNewer();
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the messages of this conversation still queued in the outbox, for example by a previous process.
+     */
+    private void loadPendingMessages() {
+        MessageOutbox outbox = MessageOutbox.getInstance(getApplicationContext());
+        AppExecutors.diskRead().execute(() -> {
+            List<ChatMessage> pending = outbox.getPending(conversationId);
+            AppExecutors.mainThread().execute(() -> {
+                // Messages sent meanwhile were queued after these ones
+                removeById(pending, pendingMessages);
+                pendingMessages.addAll(0, pending);
+                showMessages(false);
+            });
+        });
+    }
+
+    /**
+     * Sends the typed message through the outbox, showing it right away as pending.
+     */
+    private void sendMessage() {
+        String text = binding.inputMessage.getText().toString().trim();
+        if (text.isEmpty()) {
+            return;
+        }
+        binding.inputMessage.setText(null);
+
+        ChatMessage message = Conversations.newMessage(
+                preferenceManager.getString(Constants.KEY_USER_ID),
+                preferenceManager.getString(Constants.KEY_NAME),
+                preferenceManager.getString(Constants.KEY_IMAGE_HASH),
+                receiver, text);
+        MessageOutbox.getInstance(getApplicationContext()).send(message);
+        pendingMessages.add(message);
+        messagesWindow.jumpToLatest();
+        showMessages(true);
+    }
+
+    @Override
+    public void onMessagesChanged(List<ChatMessage> messages, boolean isAtLatest) {
+        windowMessages = messages;
+        this.isAtLatest = isAtLatest;
+        // A pending message found in the window was delivered
+        removeById(pendingMessages, messages);
+        // Follow new messages only if the user was already looking at the newest one
+        showMessages(!binding.chatRecyclerView.canScrollVertically(1));
+        binding.progressBar.setVisibility(View.GONE);
+        binding.chatRecyclerView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Shows the messages of the window, followed by the pending ones if the window reaches the newest message.
+     *
+     * @param scrollToLatest True to scroll to the newest message once the list is shown.
+     */
+    private void showMessages(boolean scrollToLatest) {
+        List<ChatMessage> messages = new ArrayList<>(windowMessages);
+        if (isAtLatest) {
+            messages.addAll(pendingMessages);
+        }
+        chatAdapter.submitList(messages, () -> {
+            if (scrollToLatest && isAtLatest && !messages.isEmpty()) {
+                binding.chatRecyclerView.scrollToPosition(messages.size() - 1);
+            }
+        });
+    }
+
+    /**
+     * @param messages The list to remove from.
+     * @param found    The messages to remove, matched by ID.
+     */
+    private static void removeById(List<ChatMessage> messages, List<ChatMessage> found) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        for (ChatMessage message : found) {
+            ids.add(message.id);
+        }
+        Iterator<ChatMessage> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            if (ids.contains(iterator.next().id)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void onMessagesError(Exception exception) {
+        binding.progressBar.setVisibility(View.GONE);
+        Utilities.showToast(this, "Unable to load messages", ToastType.ERROR);
+    }
+}
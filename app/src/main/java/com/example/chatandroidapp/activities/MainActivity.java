@@ -1,33 +1,61 @@
 package com.example.chatandroidapp.activities;
 
+import android.Manifest;
+import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
-import android.util.Base64;
+import android.view.View;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
-import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.ChatApplication;
+import com.example.chatandroidapp.adapters.ConversationsAdapter;
 import com.example.chatandroidapp.databinding.ActivityMainBinding;
+import com.example.chatandroidapp.firebase.Inbox;
+import com.example.chatandroidapp.firebase.MessageIngestor;
+import com.example.chatandroidapp.firebase.MessageOutbox;
+import com.example.chatandroidapp.firebase.TokenSync;
+import com.example.chatandroidapp.module.Conversation;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.AvatarLoader;
+import com.example.chatandroidapp.utilities.BlobStore;
 import com.example.chatandroidapp.utilities.Constants;
 import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.TaskTracer;
 import com.example.chatandroidapp.utilities.ToastType;
 import com.example.chatandroidapp.utilities.Utilities;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Source;
 import com.google.firebase.messaging.FirebaseMessaging;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * MainActivity serves as the primary screen of the Chat Android application.
  * It handles user interface initialization, user details loading, token management, and user sign-out functionality.
+ * The recent conversations are rendered from the signed-in user's {@link Inbox} with a single listener,
+ * whatever the number of conversations.
  */
 public class MainActivity extends AppCompatActivity {
     private ActivityMainBinding binding;// View binding for the activity's layout
     private PreferenceManager preferenceManager;// PreferenceManager instance for managing shared preferences
+    private ConversationsAdapter conversationsAdapter;
+    private ListenerRegistration inboxRegistration; // Listens to the inbox while the activity is visible
+    private boolean isFullyDrawnReported; // Startup ends once, with the first inbox shown
 
     /**
      * Called when the activity is first created. Initializes the UI, loads user details,
@@ -43,11 +71,120 @@ public class MainActivity extends AppCompatActivity {
 
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         preferenceManager = new PreferenceManager(getApplicationContext());
+        conversationsAdapter = new ConversationsAdapter(this::openChat);
 
         setContentView(binding.getRoot());
+        binding.conversationsRecyclerView.setAdapter(conversationsAdapter);
         setUpListeners();
         loadUserDetails();
-        getToken();
+
+        // Network work waits until the first frame is drawn
+        binding.getRoot().post(() -> {
+            revalidateSession();
+            getToken();
+        });
+        requestNotificationPermission();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        listenToInbox();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (inboxRegistration != null) {
+            inboxRegistration.remove();
+            inboxRegistration = null;
+        }
+    }
+
+    /**
+     * Listens to the most recent entries of the inbox. The first snapshot comes from the local cache
+     * when there is one, and every later message only changes the entry of its conversation.
+     */
+    private void listenToInbox() {
+        inboxRegistration = Inbox.recent(FirebaseFirestore.getInstance(),
+                        preferenceManager.getString(Constants.KEY_USER_ID), Constants.INBOX_SIZE)
+                .addSnapshotListener((snapshot, exception) -> {
+                    binding.progressBar.setVisibility(View.GONE);
+                    if (exception != null) {
+                        Utilities.showToast(this, "Unable to load conversations", ToastType.ERROR);
+                        reportInboxDrawn();
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+                    TaskTracer.traceSnapshot("inbox.listen", snapshot);
+                    List<Conversation> conversations = new ArrayList<>(snapshot.size());
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        conversations.add(Inbox.toConversation(document));
+                    }
+                    // The list is diffed in the background, startup ends when its rows are bound
+                    conversationsAdapter.submitList(conversations, this::reportInboxDrawn);
+                    binding.conversationsRecyclerView.setVisibility(conversations.isEmpty() ? View.GONE : View.VISIBLE);
+                    binding.textEmpty.setVisibility(conversations.isEmpty() ? View.VISIBLE : View.GONE);
+                });
+    }
+
+    /**
+     * Reports the end of startup the first time the inbox is shown, whether from the cache or the server.
+     */
+    private void reportInboxDrawn() {
+        if (!isFullyDrawnReported) {
+            isFullyDrawnReported = true;
+            reportFullyDrawn();
+        }
+    }
+
+    /**
+     * Opens the conversation with the other participant of an inbox entry.
+     *
+     * @param conversation The tapped conversation.
+     */
+    private void openChat(Conversation conversation) {
+        User peer = new User();
+        peer.id = conversation.peerId;
+        peer.name = conversation.peerName;
+        peer.imageHash = conversation.peerImageHash;
+        Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
+        intent.putExtra(Constants.KEY_USER, peer);
+        startActivity(intent);
+    }
+
+    /**
+     * Asks for the permission to post message notifications, which is runtime-granted from API 33.
+     */
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && ContextCompat.checkSelfPermission(
+                this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            requestNotificationPermission.launch(Manifest.permission.POST_NOTIFICATIONS);
+        }
+    }
+
+    // Without the permission, messages are still received, only their notifications are skipped
+    private final ActivityResultLauncher<String> requestNotificationPermission = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), isGranted -> {
+            });
+
+    /**
+     * Checks in the background that the account of the stored session still exists.
+     * The main screen is shown from the stored session right away; the user is only sent back to
+     * sign in if the server reports the account gone. Being offline keeps the session.
+     */
+    private void revalidateSession() {
+        TaskTracer.trace("session.revalidate", FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_USERS)
+                .document(preferenceManager.getString(Constants.KEY_USER_ID))
+                .get(Source.SERVER))
+                .addOnSuccessListener(document -> {
+                    if (!document.exists() && !isFinishing()) {
+                        endSession();
+                    }
+                });
     }
 
     /**
@@ -60,11 +197,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Retrieves the current Firebase Cloud Messaging (FCM) token and updates it in Firestore.
+     * Retrieves the current Firebase Cloud Messaging (FCM) token and hands it to {@link TokenSync},
+     * which only writes it to Firestore if it changed since the last acknowledged write.
      */
     private void getToken() {
-        FirebaseMessaging.getInstance().getToken()
-                .addOnSuccessListener(this::updateToken)
+        TaskTracer.trace("fcm.getToken", FirebaseMessaging.getInstance().getToken())
+                .addOnSuccessListener(token -> TokenSync.sync(getApplicationContext(), token))
                 .addOnFailureListener(e -> Utilities.showToast(this, "Failed to get FCM token", ToastType.ERROR));
     }
 
@@ -76,34 +214,38 @@ public class MainActivity extends AppCompatActivity {
         // Set the username from shared preferences
         binding.inputName.setText(preferenceManager.getString(Constants.KEY_NAME));
 
-        // Decode the Base64-encoded profile image and set it to the ImageView
-        String encodedImage = preferenceManager.getString(Constants.KEY_IMAGE);
-        if (encodedImage != null && !encodedImage.isEmpty()) {
-            byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            binding.imageProfile.setImageBitmap(bitmap);
-        } else { // Set a default image or handle the absence of a profile image
-            binding.imageProfile.setImageResource(R.drawable.ic_default_profile);
+        if (preferenceManager.getString(Constants.KEY_IMAGE) != null) {
+            // A legacy image only gets its hash once ChatApplication has moved it out of the preferences
+            Future<?> migration = ((ChatApplication) getApplication()).getProfileImageMigration();
+            AppExecutors.diskRead().execute(() -> {
+                try {
+                    migration.get();
+                } catch (ExecutionException e) {
+                    // Not moved: the default image is shown until the next start moves it
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                AppExecutors.mainThread().execute(() -> {
+                    if (!isDestroyed()) {
+                        loadProfileImage();
+                    }
+                });
+            });
+        } else {
+            loadProfileImage();
         }
     }
 
     /**
-     * Updates the user's FCM token in Firestore.
-     * @param token The new FCM token to be updated.
+     * Decodes the profile image off the main thread, or shows the default image if there is none.
      */
-    private void updateToken(String token) {
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-
-        // Reference to the current user's document in the users collection
-        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS)
-                .document(preferenceManager.getString(Constants.KEY_USER_ID));
-
-        // Update the FCM token field with the new token
-        documentReference.update(Constants.KEY_FCM_TOKEN, token)
-                .addOnSuccessListener(unused ->
-                        Utilities.showToast(this, "Token updated successfully", ToastType.SUCCESS))
-                .addOnFailureListener(e ->
-                        Utilities.showToast(this, "Unable to update Token", ToastType.ERROR));
+    private void loadProfileImage() {
+        AvatarLoader.getInstance(this).load(
+                binding.imageProfile,
+                preferenceManager.getString(Constants.KEY_USER_ID),
+                preferenceManager.getString(Constants.KEY_IMAGE_HASH),
+                null); // The bytes of the signed-in user's avatar are in the BlobStore
     }
 
     /**
@@ -111,12 +253,15 @@ public class MainActivity extends AppCompatActivity {
      * <ul>
      *     <li>Displays a signing out toast message.</li>
      *     <li>Removes the FCM token from Firestore.</li>
-     *     <li>Clears all user preferences.</li>
+     *     <li>Drops the queued messages, the message notifications, the preferences and the stored avatar,
+     *     see {@link #endSession()}.</li>
      *     <li>Redirects the user to the SignInActivity.</li>
      * </ul>
      */
     private void signOut() {
         Utilities.showToast(this, "Signing out ...", ToastType.INFO);
+        // A token write still pending must not land after the sign-out
+        TokenSync.cancel(getApplicationContext());
 
         // Get an instance of Firestore
         FirebaseFirestore database = FirebaseFirestore.getInstance();
@@ -128,17 +273,30 @@ public class MainActivity extends AppCompatActivity {
         // Create a map to hold the fields to update
         HashMap<String, Object> updates = new HashMap<>();
         updates.put(Constants.KEY_FCM_TOKEN, FieldValue.delete());
+        updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
 
         // Update the user's document to remove the FCM token
-        documentReference.update(updates)
-                .addOnSuccessListener(unused -> {
-                    // Clear all preferences upon successful token removal
-                    preferenceManager.clear();
-
-                    // Start the SignInActivity and finish the current activity
-                    startActivity(new Intent(getApplicationContext(), SignInActivity.class));
-                    finish();
-                })
+        TaskTracer.trace("signOut", documentReference.update(updates), 1)
+                .addOnSuccessListener(unused -> endSession())
                 .addOnFailureListener(e -> Utilities.showToast(this, "Unable to sign out", ToastType.ERROR));
     }
+
+    /**
+     * Drops everything kept for the signed-in user and goes back to sign in. Shared by the sign-out and by
+     * a session whose account is gone, so that neither leaves work or data behind for the next user.
+     */
+    private void endSession() {
+        Context context = getApplicationContext();
+        TokenSync.cancel(context);
+        // Messages still queued were written in the name of this user
+        MessageOutbox.getInstance(context).clear();
+        preferenceManager.clear();
+        // Pushes still arriving for this user are dropped from here on, the ones already notified are removed
+        MessageIngestor.getInstance(context).clearAll();
+        BlobStore blobStore = BlobStore.getInstance(context);
+        AppExecutors.diskIO().execute(blobStore::clear);
+
+        startActivity(new Intent(context, SignInActivity.class));
+        finish();
+    }
 }
\ No newline at end of file
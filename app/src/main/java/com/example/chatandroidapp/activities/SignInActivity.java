@@ -6,9 +6,17 @@ import android.view.View;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.chatandroidapp.database.UserStore;
 import com.example.chatandroidapp.databinding.ActivitySigninBinding;
+import com.example.chatandroidapp.firebase.AvatarStore;
+import com.example.chatandroidapp.firebase.CredentialStore;
+import com.example.chatandroidapp.firebase.Directory;
+import com.example.chatandroidapp.utilities.AppExecutors;
 import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.PasswordHasher;
 import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.SingleFlight;
+import com.example.chatandroidapp.utilities.TaskTracer;
 import com.example.chatandroidapp.utilities.ToastType;
 import com.example.chatandroidapp.utilities.Utilities; // Import Utilities class
 import com.google.firebase.firestore.DocumentSnapshot;
@@ -16,6 +24,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 
 /**
  * SignInActivity handles the user sign-in functionality for the chat application.
+ * As the launcher activity, it also forwards users who are already signed in to {@link MainActivity}.
  *
  * @author Daniel Tongu
  */
@@ -27,6 +36,10 @@ public class SignInActivity extends AppCompatActivity {
     // PreferenceManager to manage shared preferences
     private PreferenceManager preferenceManager;
 
+    // Shared by every instance, so that repeated taps, even across a configuration change, make a single query
+    private static final SingleFlight<DocumentSnapshot> SIGN_IN = new SingleFlight<>();
+    private SingleFlight.Subscription signInSubscription; // Result delivery to this activity, cancelled on destroy
+
     /**
      * Called when the activity is starting. Initializes the activity components.
      *
@@ -35,9 +48,18 @@ public class SignInActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        binding = ActivitySigninBinding.inflate(getLayoutInflater());
         preferenceManager = new PreferenceManager(getApplicationContext());
 
+        // A signed-in user goes straight to the main screen, without inflating the sign-in layout
+        if (preferenceManager.getBoolean(Constants.KEY_IS_SIGNED_IN)
+                && preferenceManager.getString(Constants.KEY_USER_ID) != null) {
+            startActivity(new Intent(getApplicationContext(), MainActivity.class));
+            finish();
+            return;
+        }
+
+        binding = ActivitySigninBinding.inflate(getLayoutInflater());
+
         setContentView(binding.getRoot());
         setListeners();
     }
@@ -59,39 +81,88 @@ public class SignInActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The sign-in carries on, but must not touch this activity anymore
+        if (signInSubscription != null) {
+            signInSubscription.cancel();
+        }
+    }
+
     /**
      * Authenticates the user with the provided email and password.
+     * The loading state is kept until the sign-in completes, and a sign-in of the same email already in
+     * flight is joined rather than started again.
      */
     private void signIn() {
         showLoadingIndicator(true);
         Utilities.showToast(this, "Authenticating...", ToastType.INFO);
         FirebaseFirestore database = FirebaseFirestore.getInstance();
-
-        // Query the database for a user matching the entered email and password
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .whereEqualTo(Constants.KEY_EMAIL, binding.inputEmail.getText().toString().trim())
-                .whereEqualTo(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString().trim())
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null && !task.getResult().getDocuments().isEmpty()) {
+        String email = binding.inputEmail.getText().toString();
+        String password = binding.inputPassword.getText().toString().trim();
+
+        // Look up the credentials of the email and verify the password off the main thread. Only an attempt
+        // with the same email and password is joined: one with another password must get its own answer
+        String key = CredentialStore.normalizeEmail(email) + "\n" + PasswordHasher.digest(password);
+        signInSubscription = SIGN_IN.run(key,
+                callback -> TaskTracer.trace("signIn", CredentialStore.signIn(database, email, password)).addOnCompleteListener(task ->
+                        callback.onComplete(task.isSuccessful() ? task.getResult() : null, task.getException())),
+                (documentSnapshot, exception) -> {
+                    if (documentSnapshot != null && documentSnapshot.exists()) {
                         Utilities.showToast(this, "Authentication successful.", ToastType.SUCCESS);
+                        // Only the avatar hash is kept, the image itself is fetched lazily from the Avatars collection
+                        String encodedImage = documentSnapshot.getString(Constants.KEY_IMAGE);
+                        boolean isImageMigrated = encodedImage != null && !encodedImage.isEmpty();
+                        String imageHash = AvatarStore.migrateInlineImage(database, documentSnapshot);
+                        updateDirectoryEntry(database, documentSnapshot, imageHash, isImageMigrated);
                         // If authentication is successful, save user details in preferences and navigate to MainActivity
-                        DocumentSnapshot documentSnapshot = task.getResult().getDocuments().get(0);
-                        preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
-                        preferenceManager.putString(Constants.KEY_USER_ID, documentSnapshot.getId());
-                        preferenceManager.putString(Constants.KEY_NAME, documentSnapshot.getString(Constants.KEY_NAME));
-                        preferenceManager.putString(Constants.KEY_IMAGE, documentSnapshot.getString(Constants.KEY_IMAGE));
+                        preferenceManager.edit()
+                                .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                                .putString(Constants.KEY_USER_ID, documentSnapshot.getId())
+                                .putString(Constants.KEY_NAME, documentSnapshot.getString(Constants.KEY_NAME))
+                                .putString(Constants.KEY_IMAGE_HASH, imageHash)
+                                .apply();
                         Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                         startActivity(intent);
+                        return;
+                    }
+
+                    showLoadingIndicator(false);
+                    if (CredentialStore.isEmailTaken(exception)) {
+                        Utilities.showToast(this, "This email is already used by another account.", ToastType.ERROR);
+                    } else if (exception != null) {
+                        Utilities.showToast(this, exception.getMessage(), ToastType.ERROR);
                     } else {
                         Utilities.showToast(this, "Unable to sign in", ToastType.ERROR);
                     }
-                })
-                .addOnFailureListener(exception -> {
-                    Utilities.showToast(this, exception.getMessage(), ToastType.ERROR);
                 });
-        showLoadingIndicator(false);
+    }
+
+    /**
+     * Writes the directory entry of the signed-in user only if it is missing or stale: accounts created before
+     * the directory get theirs on their next sign-in, and an avatar just moved out of the user document changes
+     * the hash of theirs. Otherwise the local copy of the directory tells whether the entry is up to date,
+     * so that an ordinary sign-in writes nothing.
+     *
+     * @param database        The Firestore instance.
+     * @param document        The user document.
+     * @param imageHash       The avatar hash of the user.
+     * @param isImageMigrated True if the avatar was just moved out of the user document.
+     */
+    private void updateDirectoryEntry(FirebaseFirestore database, DocumentSnapshot document, String imageHash,
+                                      boolean isImageMigrated) {
+        if (isImageMigrated) {
+            Directory.put(database, document, imageHash);
+            return;
+        }
+        UserStore userStore = new UserStore(getApplicationContext());
+        AppExecutors.diskRead().execute(() -> {
+            if (!Directory.isUpToDate(userStore.getUser(document.getId()), document, imageHash)) {
+                AppExecutors.mainThread().execute(() -> Directory.put(database, document, imageHash));
+            }
+        });
     }
 
     /**
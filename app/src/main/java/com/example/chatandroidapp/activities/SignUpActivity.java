@@ -1,8 +1,6 @@
 package com.example.chatandroidapp.activities;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -13,14 +11,23 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.chatandroidapp.databinding.ActivitySignupBinding;
+import com.example.chatandroidapp.firebase.AvatarStore;
+import com.example.chatandroidapp.firebase.CredentialStore;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.AvatarCache;
+import com.example.chatandroidapp.utilities.BlobStore;
 import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.ImageImporter;
+import com.example.chatandroidapp.utilities.PasswordHasher;
 import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.SingleFlight;
+import com.example.chatandroidapp.utilities.TaskTracer;
 import com.example.chatandroidapp.utilities.ToastType;
 import com.example.chatandroidapp.utilities.Utilities; // Import Utilities class
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 /**
@@ -30,9 +37,14 @@ import java.util.HashMap;
  */
 public class SignUpActivity extends AppCompatActivity {
     private ActivitySignupBinding binding; // View binding for activity_signup.xml
-    private String encodedImage; // Encoded image string for the user's profile picture
+    private ImageImporter.Variants avatar; // Compressed sizes of the user's profile picture
     private PreferenceManager preferenceManager; // PreferenceManager to manage shared preferences
 
+    // Shared by every instance, so that repeated taps, even across a configuration change, create a single account
+    private static final SingleFlight<String> SIGN_UP = new SingleFlight<>();
+    private static final long SIGN_UP_WRITES = 6; // Credentials, user, three avatar sizes and directory entry
+    private SingleFlight.Subscription signUpSubscription; // Result delivery to this activity, cancelled on destroy
+
     /**
      * Called when the activity is starting. Initializes the activity components.
      * @param savedInstanceState If the activity is being re-initialized after previously being shut down,
@@ -49,6 +61,15 @@ public class SignUpActivity extends AppCompatActivity {
         setListeners();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // The registration carries on, but must not touch this activity anymore
+        if (signUpSubscription != null) {
+            signUpSubscription.cancel();
+        }
+    }
+
     /**
      * Sets up the listeners for the UI elements.
      */
@@ -71,7 +92,10 @@ public class SignUpActivity extends AppCompatActivity {
 
     /**
      * Registers the new user to the Firebase Firestore database.
-     * Checks for duplicate email before adding.
+     * The email is claimed and the user, its avatar and its hashed credentials are written in one
+     * transaction, which fails if the email is already in use.
+     * The loading state is kept until the registration completes, and a registration of the same inputs
+     * already in flight is joined rather than started again, so repeated taps create a single account.
      */
     private void signUp() {
         Utilities.showToast(this, "Onboarding...", ToastType.INFO);
@@ -80,61 +104,63 @@ public class SignUpActivity extends AppCompatActivity {
 
         // Initialize Firebase Firestore
         FirebaseFirestore database = FirebaseFirestore.getInstance();
-
+        String imageHash = AvatarStore.hashOf(avatar.thumbnail);
+        String name = binding.inputName.getText().toString().trim();
         String email = binding.inputEmail.getText().toString().trim();
 
-        // Check if a user with the same email already exists
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .whereEqualTo(Constants.KEY_EMAIL, email)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
-                        Utilities.showToast(this, "Email already in use. Please use a different email.", ToastType.WARNING);
-                    } else {
-                        addUserToDatabase();
-                    }
-                })
-                .addOnFailureListener(exception -> {
-                    Utilities.showToast(this, exception.getMessage(), ToastType.ERROR);
-                });
-        showLoadingIndicator(false);
-    }
-
-    /**
-     * Adds the new user to the database.
-     */
-    private void addUserToDatabase() {
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-
         // Create a HashMap to store user data
         HashMap<String, Object> user = new HashMap<>();
-        user.put(Constants.KEY_NAME, binding.inputName.getText().toString().trim());
-        user.put(Constants.KEY_EMAIL, binding.inputEmail.getText().toString().trim());
-        user.put(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString().trim());
-        user.put(Constants.KEY_IMAGE, encodedImage);
-
-        // Add user data to the "Users" collection
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .add(user)
-                .addOnSuccessListener(documentReference -> {
+        user.put(Constants.KEY_NAME, name);
+        user.put(Constants.KEY_EMAIL, email);
+        user.put(Constants.KEY_IMAGE_HASH, imageHash);
+        user.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+
+        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS).document();
+
+        String password = binding.inputPassword.getText().toString().trim();
+        ImageImporter.Variants registeredAvatar = avatar;
+
+        // Only a registration of the very same inputs is joined: one edited in between, even with the same
+        // email, must get its own answer rather than the account registered with the previous inputs
+        String key = CredentialStore.normalizeEmail(email) + "\n" + PasswordHasher.digest(password)
+                + "\n" + name + "\n" + imageHash;
+        signUpSubscription = SIGN_UP.run(key,
+                callback -> TaskTracer.trace("signUp", CredentialStore.register(database, documentReference, user,
+                                email, password, registeredAvatar, imageHash), SIGN_UP_WRITES)
+                        .addOnCompleteListener(task -> callback.onComplete(
+                                task.isSuccessful() ? documentReference.getId() : null, task.getException())),
+                (userId, exception) -> {
+                    if (exception != null) {
+                        showLoadingIndicator(false);
+                        if (CredentialStore.isEmailTaken(exception)) {
+                            Utilities.showToast(this, "Email already in use. Please use a different email.", ToastType.WARNING);
+                        } else {
+                            Utilities.showToast(this, exception.getMessage(), ToastType.ERROR);
+                        }
+                        return;
+                    }
                     Utilities.showToast(this, "Onboarding successful", ToastType.SUCCESS);
 
-                    // Save user info in preferences
-                    preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
-                    preferenceManager.putString(Constants.KEY_USER_ID, documentReference.getId());
-                    preferenceManager.putString(Constants.KEY_NAME, binding.inputName.getText().toString().trim());
-                    preferenceManager.putString(Constants.KEY_EMAIL, binding.inputEmail.getText().toString().trim());
-                    preferenceManager.putString(Constants.KEY_IMAGE, encodedImage);
+                    // Save user info in preferences, in a single commit
+                    preferenceManager.edit()
+                            .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                            .putString(Constants.KEY_USER_ID, userId)
+                            .putString(Constants.KEY_NAME, name)
+                            .putString(Constants.KEY_EMAIL, email)
+                            .putString(Constants.KEY_IMAGE_HASH, imageHash)
+                            .apply();
+
+                    // Keep the uploaded avatar on disk so the main screen never fetches it back
+                    BlobStore blobStore = BlobStore.getInstance(this);
+                    String avatarKey = AvatarCache.keyOf(userId, imageHash);
+                    byte[] avatarBytes = registeredAvatar.thumbnail;
+                    AppExecutors.diskIO().execute(() -> blobStore.put(avatarKey, avatarBytes));
 
                     // Navigate to MainActivity
                     Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
-                })
-                .addOnFailureListener(exception -> {
-                    Utilities.showToast(this, exception.getMessage(), ToastType.ERROR);
                 });
-        showLoadingIndicator(false);
     }
 
     /**
@@ -147,23 +173,16 @@ public class SignUpActivity extends AppCompatActivity {
                     // Get the selected image URI
                     Uri imageUri = result.getData().getData();
 
-                    try {
-                        // Open an InputStream to the image
-                        InputStream inputStream = getContentResolver().openInputStream(imageUri);
-                        // Decode the InputStream into a Bitmap
-                        Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-
-                        // Set the selected image in the profile ImageView
-                        binding.imageProfile.setImageBitmap(bitmap);
-                        // Hide the "Add Image" text
-                        binding.textAddImage.setVisibility(View.GONE);
-                        // Encode the image to Base64
-                        encodedImage = Utilities.encodeImage(bitmap);
-
-                    } catch (FileNotFoundException e) {
-                        Utilities.showToast(this, "Image not found", ToastType.ERROR);
-                        e.printStackTrace();
-                    }
+                    // Decode, orient and compress the image off the main thread, subsampled to the sizes needed
+                    ImageImporter.importImage(getContentResolver(), imageUri)
+                            .addOnSuccessListener(this, variants -> {
+                                avatar = variants;
+                                // Set the selected image in the profile ImageView
+                                binding.imageProfile.setImageBitmap(variants.preview);
+                                // Hide the "Add Image" text
+                                binding.textAddImage.setVisibility(View.GONE);
+                            })
+                            .addOnFailureListener(this, e -> Utilities.showToast(this, "Unable to read image", ToastType.ERROR));
                 }
             }
     );
@@ -175,7 +194,7 @@ public class SignUpActivity extends AppCompatActivity {
     private Boolean isValidateSignUpDetails() {
         boolean isValid = false;
 
-        if (encodedImage == null) {
+        if (avatar == null) {
             Utilities.showToast(this, "Please select your image", ToastType.WARNING);
         } else if (binding.inputName.getText().toString().trim().isEmpty()) {
             Utilities.showToast(this, "Please enter your name", ToastType.WARNING);
@@ -1,76 +1,245 @@
 package com.example.chatandroidapp.activities;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatandroidapp.adapters.UsersAdapter;
+import com.example.chatandroidapp.database.UserStore;
 import com.example.chatandroidapp.databinding.ActivityUserBinding;
+import com.example.chatandroidapp.firebase.UsersSync;
 import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AppExecutors;
 import com.example.chatandroidapp.utilities.Constants;
 import com.example.chatandroidapp.utilities.PreferenceManager;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class UserActivity extends AppCompatActivity {
+/**
+ * UserActivity lists the other users of the application.
+ * The list is rendered from the local user directory right away, while {@link UsersSync}
+ * reconciles it with Firestore in the background. It holds a window of at most
+ * {@link Constants#USERS_WINDOW_SIZE} users, which slides a page at a time as the list scrolls either way.
+ * Typing in the search field filters the list through the full-text index of the local directory,
+ * once typing pauses. Tapping a user opens the conversation with them.
+ */
+public class UserActivity extends AppCompatActivity implements UsersSync.Listener {
     private ActivityUserBinding binding;
     private PreferenceManager preferenceManager;
+    private UsersAdapter usersAdapter;
+    private UserStore userStore;
+    private UsersSync usersSync;
+
+    private List<User> window = new ArrayList<>(); // Users currently shown, a slice of the directory
+    private boolean hasMoreAfter; // True when the directory has users after the window
+    private boolean hasMoreBefore; // True when users before the window were dropped
+    private boolean isLoadingPage; // True while a page is read, so that a single one is in flight
+    private int generation; // Changes whenever the window is replaced, so that pages read for an older one are dropped
+    private boolean isCaughtUp; // True once the sync has read every pending change
+
+    private final Handler searchHandler = new Handler(Looper.getMainLooper()); // Debounces keystrokes
+    private final Runnable searchRunnable = this::getUsers;
+    private String searchQuery = ""; // Current text of the search field, trimmed
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         binding = ActivityUserBinding.inflate(getLayoutInflater());
         preferenceManager = new PreferenceManager(getApplicationContext());
+        usersAdapter = new UsersAdapter(this::openChat);
+        userStore = new UserStore(getApplicationContext());
+        usersSync = new UsersSync(FirebaseFirestore.getInstance(), userStore, Constants.USERS_SYNC_BATCH_SIZE, this);
 
         setContentView(binding.getRoot());
+        binding.usersRecyclerView.setAdapter(usersAdapter);
         setListeners();
+        loading(true);
         getUsers();
+        usersSync.start();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(searchRunnable);
+        usersSync.stop();
     }
 
     private void setListeners() {
         binding.imageBack.setOnClickListener(v -> onBackPressed());
+
+        // Search once typing pauses, rather than on every keystroke
+        binding.inputSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString().trim();
+                window = new ArrayList<>(); // A new query reads from the top
+                generation++; // Drops the pages read for the previous query
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, Constants.SEARCH_DEBOUNCE_MILLIS);
+            }
+        });
+
+        // Read the next or previous page before the user reaches an end of the window
+        binding.usersRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager == null || isLoadingPage || window.isEmpty()) {
+                    return;
+                }
+                if (dy > 0 && hasMoreAfter && layoutManager.findLastVisibleItemPosition()
+                        >= window.size() - Constants.USERS_PREFETCH_DISTANCE) {
+                    getPage(true);
+                } else if (dy < 0 && hasMoreBefore
+                        && layoutManager.findFirstVisibleItemPosition() <= Constants.USERS_PREFETCH_DISTANCE) {
+                    getPage(false);
+                }
+            }
+        });
     }
 
+    /**
+     * Reads the current window again from its first user, or the search results if a search is typed,
+     * and displays them. Called when the list opens, when the query changes and when the sync wrote users.
+     */
     private void getUsers() {
-        loading(true);
+        String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID);
+        String query = searchQuery;
+        User first = window.isEmpty() || !query.isEmpty() ? null : window.get(0);
+        int requested = Math.max(window.size(), 2 * Constants.USERS_PAGE_SIZE);
+        int requestGeneration = ++generation;
+        isLoadingPage = false; // Pages in flight are dropped
+        AppExecutors.diskRead().execute(() -> {
+            List<User> users = query.isEmpty()
+                    ? userStore.getUsersFrom(first, true, requested, currentUserId)
+                    : userStore.search(query, Constants.USERS_WINDOW_SIZE, currentUserId);
+            AppExecutors.mainThread().execute(() -> {
+                if (requestGeneration != generation) {
+                    return; // Replaced by a later read
+                }
+                hasMoreAfter = query.isEmpty() && users.size() >= requested;
+                hasMoreBefore = first != null;
+                showUsers(users, query);
+            });
+        });
+    }
 
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-
-        database.collection(Constants.KEY_COLLECTION_USERS).get()
-                .addOnCompleteListener(task -> {
-                    loading(false);
-                    String currentUserid = preferenceManager.getString(Constants.KEY_USER_ID);
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<User> users = new ArrayList<>();
-
-                        for (QueryDocumentSnapshot queryDocumentSnapshot : task.getResult()) {
-                            if (currentUserid.equals(queryDocumentSnapshot.getId())) {
-                                continue;
-                            }
-                            User user = new User();
-                            user.name = queryDocumentSnapshot.getString(Constants.KEY_NAME);
-                            user.email = queryDocumentSnapshot.getString(Constants.KEY_EMAIL);
-                            user.image = queryDocumentSnapshot.getString(Constants.KEY_IMAGE);
-                            user.token = queryDocumentSnapshot.getString(Constants.KEY_FCM_TOKEN);
-                            user.id = queryDocumentSnapshot.getId();
-
-                            users.add(user);
-                        }
-                        if (users.isEmpty()) {
-                            showErrorMessage();
-                        } else {
-                            UsersAdapter usersAdapter = new UsersAdapter(users);
-                            binding.usersRecyclerView.setAdapter(usersAdapter);
-                            binding.usersRecyclerView.setVisibility(View.VISIBLE);
-                        }
-                    } else {
-                        showErrorMessage();
+    /**
+     * Reads the page after or before the window, and slides the window over it.
+     *
+     * @param isNext True for the page after the window, false for the page before it.
+     */
+    private void getPage(boolean isNext) {
+        String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID);
+        User anchor = isNext ? window.get(window.size() - 1) : window.get(0);
+        int requestGeneration = generation;
+        isLoadingPage = true;
+        AppExecutors.diskRead().execute(() -> {
+            List<User> page = isNext
+                    ? userStore.getUsersFrom(anchor, false, Constants.USERS_PAGE_SIZE, currentUserId)
+                    : userStore.getUsersBefore(anchor, Constants.USERS_PAGE_SIZE, currentUserId);
+            AppExecutors.mainThread().execute(() -> {
+                if (requestGeneration != generation || isFinishing() || isDestroyed()) {
+                    return;
+                }
+                isLoadingPage = false;
+                boolean isFull = page.size() >= Constants.USERS_PAGE_SIZE;
+                List<User> users = new ArrayList<>(window.size() + page.size());
+                if (isNext) {
+                    users.addAll(window);
+                    users.addAll(page);
+                    hasMoreAfter = isFull;
+                    // Drop the oldest rows above the screen; the ones on screen keep their position
+                    int excess = users.size() - Constants.USERS_WINDOW_SIZE;
+                    if (excess > 0) {
+                        users = new ArrayList<>(users.subList(excess, users.size()));
+                        hasMoreBefore = true;
+                    }
+                } else {
+                    users.addAll(page);
+                    users.addAll(window);
+                    hasMoreBefore = isFull;
+                    int excess = users.size() - Constants.USERS_WINDOW_SIZE;
+                    if (excess > 0) {
+                        users = new ArrayList<>(users.subList(0, Constants.USERS_WINDOW_SIZE));
+                        hasMoreAfter = true;
                     }
-                });
+                }
+                showUsers(users, "");
+            });
+        });
+    }
+
+    /**
+     * Submits users to the adapter, which only rebinds the rows that changed.
+     *
+     * @param users The users read from the local store, which become the window.
+     * @param query The search the users were read for, empty for the whole directory.
+     */
+    private void showUsers(List<User> users, String query) {
+        // Drop results of a search that has since been replaced
+        if (isFinishing() || isDestroyed() || !query.equals(searchQuery)) {
+            return;
+        }
+        window = users;
+        usersAdapter.submitList(users);
+
+        if (!users.isEmpty()) {
+            loading(false);
+            binding.usersRecyclerView.setVisibility(View.VISIBLE);
+            binding.textErrorMessage.setVisibility(View.GONE);
+        } else if (isCaughtUp || !query.isEmpty()) {
+            loading(false);
+            showErrorMessage();
+        }
+    }
+
+    /**
+     * Opens the conversation with a user, and leaves the list.
+     *
+     * @param user The user to chat with.
+     */
+    private void openChat(User user) {
+        Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
+        intent.putExtra(Constants.KEY_USER, user);
+        startActivity(intent);
+        finish();
+    }
+
+    @Override
+    public void onUsersSynced(boolean isCaughtUp) {
+        this.isCaughtUp = this.isCaughtUp || isCaughtUp;
+        getUsers();
+    }
+
+    @Override
+    public void onSyncError(Exception exception) {
+        // Keep showing the local directory; it is only an error if there is nothing to show
+        isCaughtUp = true;
+        if (usersAdapter.getItemCount() == 0) {
+            loading(false);
+            showErrorMessage();
+        }
     }
 
     private void showErrorMessage() {
@@ -81,4 +250,4 @@ public class UserActivity extends AppCompatActivity {
     private void loading(Boolean isLoading) {
         binding.progressBar.setVisibility(isLoading ? View.VISIBLE : View.INVISIBLE);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package com.example.chatandroidapp.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.databinding.ItemContainerReceivedMessageBinding;
+import com.example.chatandroidapp.databinding.ItemContainerSentMessageBinding;
+import com.example.chatandroidapp.module.ChatMessage;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * ChatAdapter displays the messages of a conversation, oldest first.
+ * Messages sent by the signed-in user and messages received use different rows, sent messages
+ * still waiting in the outbox are dimmed, and the ones the server refused are marked as not sent. As with
+ * {@link UsersAdapter}, submitted lists are diffed in the background and only changed rows are rebound.
+ */
+public class ChatAdapter extends ListAdapter<ChatMessage, RecyclerView.ViewHolder> {
+
+    private static final int VIEW_TYPE_SENT = 1;
+    private static final int VIEW_TYPE_RECEIVED = 2;
+    private static final float PENDING_ALPHA = 0.6f; // Opacity of a sent message waiting in the outbox
+
+    /**
+     * Identifies messages by ID and compares the fields displayed in a row.
+     */
+    private static final DiffUtil.ItemCallback<ChatMessage> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatMessage>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatMessage oldMessage, @NonNull ChatMessage newMessage) {
+            return Objects.equals(oldMessage.id, newMessage.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatMessage oldMessage, @NonNull ChatMessage newMessage) {
+            return Objects.equals(oldMessage.text, newMessage.text)
+                    && oldMessage.timestamp == newMessage.timestamp
+                    && oldMessage.isPending == newMessage.isPending
+                    && oldMessage.isFailed == newMessage.isFailed;
+        }
+    };
+
+    private final String currentUserId;
+    private final DateFormat timeFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
+
+    /**
+     * Constructor for ChatAdapter.
+     *
+     * @param currentUserId The ID of the signed-in user, whose messages are shown as sent.
+     */
+    public ChatAdapter(String currentUserId) {
+        super(DIFF_CALLBACK);
+        this.currentUserId = currentUserId;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return currentUserId.equals(getItem(position).senderId) ? VIEW_TYPE_SENT : VIEW_TYPE_RECEIVED;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_SENT) {
+            return new SentMessageViewHolder(ItemContainerSentMessageBinding.inflate(inflater, parent, false));
+        }
+        return new ReceivedMessageViewHolder(ItemContainerReceivedMessageBinding.inflate(inflater, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        ChatMessage message = getItem(position);
+        String time = timeFormat.format(new Date(message.timestamp));
+        if (holder instanceof SentMessageViewHolder) {
+            ((SentMessageViewHolder) holder).setData(message, time);
+        } else {
+            ((ReceivedMessageViewHolder) holder).setData(message, time);
+        }
+    }
+
+    static class SentMessageViewHolder extends RecyclerView.ViewHolder {
+        private final ItemContainerSentMessageBinding binding;
+
+        SentMessageViewHolder(ItemContainerSentMessageBinding itemContainerSentMessageBinding) {
+            super(itemContainerSentMessageBinding.getRoot());
+            binding = itemContainerSentMessageBinding;
+        }
+
+        void setData(ChatMessage message, String time) {
+            binding.textMessage.setText(message.text);
+            Context context = binding.getRoot().getContext();
+            binding.textDateTime.setText(message.isFailed ? context.getString(R.string.message_not_sent, time) : time);
+            binding.textDateTime.setTextColor(ContextCompat.getColor(context,
+                    message.isFailed ? R.color.error : R.color.secondary_text));
+            // Dimmed until the server acknowledges the message
+            binding.getRoot().setAlpha(message.isPending ? PENDING_ALPHA : 1f);
+        }
+    }
+
+    static class ReceivedMessageViewHolder extends RecyclerView.ViewHolder {
+        private final ItemContainerReceivedMessageBinding binding;
+
+        ReceivedMessageViewHolder(ItemContainerReceivedMessageBinding itemContainerReceivedMessageBinding) {
+            super(itemContainerReceivedMessageBinding.getRoot());
+            binding = itemContainerReceivedMessageBinding;
+        }
+
+        void setData(ChatMessage message, String time) {
+            binding.textMessage.setText(message.text);
+            binding.textDateTime.setText(time);
+        }
+    }
+}
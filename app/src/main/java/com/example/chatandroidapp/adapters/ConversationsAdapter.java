@@ -0,0 +1,111 @@
+package com.example.chatandroidapp.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatandroidapp.databinding.ItemContainerConversationBinding;
+import com.example.chatandroidapp.module.Conversation;
+import com.example.chatandroidapp.utilities.AvatarLoader;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * ConversationsAdapter displays the recent conversations of the signed-in user, newest first.
+ * As with {@link UsersAdapter}, submitted lists are diffed in the background and only changed rows are rebound,
+ * so a new message only rebinds the row of its conversation.
+ */
+public class ConversationsAdapter extends ListAdapter<Conversation, ConversationsAdapter.ConversationViewHolder> {
+
+    /**
+     * Identifies conversations by the other participant and compares the fields displayed in a row.
+     */
+    private static final DiffUtil.ItemCallback<Conversation> DIFF_CALLBACK = new DiffUtil.ItemCallback<Conversation>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Conversation oldConversation, @NonNull Conversation newConversation) {
+            return Objects.equals(oldConversation.peerId, newConversation.peerId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Conversation oldConversation, @NonNull Conversation newConversation) {
+            return Objects.equals(oldConversation.peerName, newConversation.peerName)
+                    && Objects.equals(oldConversation.peerImageHash, newConversation.peerImageHash)
+                    && Objects.equals(oldConversation.lastMessage, newConversation.lastMessage)
+                    && oldConversation.timestamp == newConversation.timestamp
+                    && oldConversation.unreadCount == newConversation.unreadCount;
+        }
+    };
+
+    /**
+     * Notified when a row is tapped.
+     */
+    public interface OnConversationClickListener {
+        /**
+         * @param conversation The conversation of the tapped row.
+         */
+        void onConversationClicked(Conversation conversation);
+    }
+
+    private final OnConversationClickListener onConversationClickListener;
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+
+    /**
+     * Constructor for ConversationsAdapter.
+     *
+     * @param onConversationClickListener Notified when a row is tapped.
+     */
+    public ConversationsAdapter(OnConversationClickListener onConversationClickListener) {
+        super(DIFF_CALLBACK);
+        this.onConversationClickListener = onConversationClickListener;
+    }
+
+    @NonNull
+    @Override
+    public ConversationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ConversationViewHolder(ItemContainerConversationBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ConversationViewHolder holder, int position) {
+        holder.setData(getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ConversationViewHolder holder) {
+        super.onViewRecycled(holder);
+        // The row no longer needs its avatar, drop the pending decode
+        AvatarLoader.getInstance(holder.binding.getRoot().getContext()).cancel(holder.binding.imageProfile);
+    }
+
+    class ConversationViewHolder extends RecyclerView.ViewHolder {
+        private final ItemContainerConversationBinding binding;
+
+        ConversationViewHolder(ItemContainerConversationBinding itemContainerConversationBinding) {
+            super(itemContainerConversationBinding.getRoot());
+            binding = itemContainerConversationBinding;
+        }
+
+        void setData(Conversation conversation) {
+            binding.textName.setText(conversation.peerName);
+            binding.textRecentMessage.setText(conversation.lastMessage);
+            binding.textDateTime.setText(dateFormat.format(new Date(conversation.timestamp)));
+            if (conversation.unreadCount > 0) {
+                binding.textUnreadCount.setText(String.valueOf(conversation.unreadCount));
+                binding.textUnreadCount.setVisibility(View.VISIBLE);
+            } else {
+                binding.textUnreadCount.setVisibility(View.GONE);
+            }
+            binding.getRoot().setOnClickListener(v -> onConversationClickListener.onConversationClicked(conversation));
+            AvatarLoader.getInstance(binding.getRoot().getContext())
+                    .load(binding.imageProfile, conversation.peerId, conversation.peerImageHash, null);
+        }
+    }
+}
@@ -1,26 +1,65 @@
 package com.example.chatandroidapp.adapters;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatandroidapp.databinding.ItemContainerUserBinding;
 import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AvatarLoader;
 
-import java.util.List;
+import java.util.Objects;
 
-public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHolder>{
-    private List<User> userList;
+/**
+ * UsersAdapter displays the user directory.
+ * Lists submitted with {@link #submitList} are diffed on a background thread by the underlying
+ * AsyncListDiffer, so that only the rows that actually changed are rebound.
+ */
+public class UsersAdapter extends ListAdapter<User, UsersAdapter.UserViewHolder> {
 
-    public UsersAdapter(List<User> userList) {
-        this.userList = userList;
+    /**
+     * Identifies users by ID and compares the fields displayed in a row.
+     */
+    private static final DiffUtil.ItemCallback<User> DIFF_CALLBACK = new DiffUtil.ItemCallback<User>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull User oldUser, @NonNull User newUser) {
+            return Objects.equals(oldUser.id, newUser.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull User oldUser, @NonNull User newUser) {
+            return Objects.equals(oldUser.name, newUser.name)
+                    && Objects.equals(oldUser.email, newUser.email)
+                    && Objects.equals(oldUser.imageHash, newUser.imageHash)
+                    && Objects.equals(oldUser.image, newUser.image);
+        }
+    };
+
+    /**
+     * Notified when a row is tapped.
+     */
+    public interface OnUserClickListener {
+        /**
+         * @param user The user of the tapped row.
+         */
+        void onUserClicked(User user);
     }
 
+    private final OnUserClickListener onUserClickListener;
+
+    /**
+     * Constructor for UsersAdapter.
+     *
+     * @param onUserClickListener Notified when a row is tapped.
+     */
+    public UsersAdapter(OnUserClickListener onUserClickListener) {
+        super(DIFF_CALLBACK);
+        this.onUserClickListener = onUserClickListener;
+    }
 
     @NonNull
     @Override
@@ -32,12 +71,14 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
 
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        holder.setUserData(userList.get(position));
+        holder.setUserData(getItem(position));
     }
 
     @Override
-    public int getItemCount() {
-        return userList.size();
+    public void onViewRecycled(@NonNull UserViewHolder holder) {
+        super.onViewRecycled(holder);
+        // The row no longer needs its avatar, drop the pending decode
+        AvatarLoader.getInstance(holder.binding.getRoot().getContext()).cancel(holder.binding.imageProfile);
     }
 
     class UserViewHolder extends RecyclerView.ViewHolder {
@@ -51,12 +92,10 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
         void setUserData(User user){
             binding.textName.setText(user.name);
             binding.textEmail.setText(user.email);
-            binding.imageProfile.setImageBitmap(getUserImage(user.image));
+            binding.getRoot().setOnClickListener(v -> onUserClickListener.onUserClicked(user));
+            // Avatars are decoded off the main thread and shared through the avatar cache
+            AvatarLoader.getInstance(binding.getRoot().getContext())
+                    .load(binding.imageProfile, user.id, user.imageHash, user.image);
         }
     }
-
-    private Bitmap getUserImage (String encodedImage) {
-    byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-    }
 }
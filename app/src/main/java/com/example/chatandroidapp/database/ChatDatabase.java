@@ -0,0 +1,198 @@
+package com.example.chatandroidapp.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * ChatDatabase is the on-device SQLite database of the application.
+ * It keeps a local copy of the user directory so that screens can render without waiting on the network,
+ * a full-text index over the names and emails of the users for search, an outbox of the messages sent but not yet delivered, and the daily Firestore usage of each screen.
+ */
+public class ChatDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "chat.db";
+    private static final int DATABASE_VERSION = 9;
+
+    // Users table
+    static final String TABLE_USERS = "users";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_NAME = "name";
+    static final String COLUMN_EMAIL = "email";
+    static final String COLUMN_IMAGE = "image";
+    static final String COLUMN_IMAGE_HASH = "image_hash";
+    static final String COLUMN_TOKEN = "token";
+    static final String COLUMN_UPDATED_AT = "updated_at";
+
+    // Index serving the (name, ID) order of the directory
+    static final String INDEX_USERS_NAME = "index_users_name";
+
+    // Full-text index over the users table, kept in sync by triggers
+    static final String TABLE_USERS_FTS = "users_fts";
+
+    // Messages table of earlier versions, never read: the conversations are read from Firestore and its cache
+    private static final String TABLE_MESSAGES = "messages";
+
+    // Outbox table: messages written locally and not yet acknowledged by Firestore
+    static final String TABLE_OUTBOX = "outbox";
+    static final String COLUMN_SEQUENCE = "sequence";
+    static final String COLUMN_CONVERSATION_ID = "conversation_id";
+    static final String COLUMN_SENDER_ID = "sender_id";
+    static final String COLUMN_SENDER_NAME = "sender_name";
+    static final String COLUMN_TEXT = "text";
+    static final String COLUMN_TIMESTAMP = "timestamp";
+    static final String COLUMN_RECEIVER_ID = "receiver_id";
+    static final String COLUMN_SENDER_IMAGE_HASH = "sender_image_hash";
+    static final String COLUMN_RECEIVER_NAME = "receiver_name";
+    static final String COLUMN_RECEIVER_IMAGE_HASH = "receiver_image_hash";
+    static final String COLUMN_FAILED = "failed"; // 1 once the server refused the message for good
+
+    // Costs table: Firestore documents read and written, and bytes received, by day, screen and operation
+    static final String TABLE_COSTS = "costs";
+    static final String COLUMN_DAY = "day";
+    static final String COLUMN_SCREEN = "screen";
+    static final String COLUMN_OPERATION = "operation";
+    static final String COLUMN_READS = "reads";
+    static final String COLUMN_WRITES = "writes";
+    static final String COLUMN_BYTES = "bytes";
+
+    private static ChatDatabase instance;
+
+    /**
+     * Returns the application-wide ChatDatabase.
+     *
+     * @param context Any context, only its application context is retained.
+     * @return The shared ChatDatabase instance.
+     */
+    public static synchronized ChatDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Opens a database of the same schema in a file of its own, so that benchmarks and tests never
+     * touch the data of the app.
+     *
+     * @param context Any context, only its application context is retained.
+     * @param name    The name of the database file.
+     * @return A new ChatDatabase, to be closed by the caller.
+     */
+    @VisibleForTesting
+    public static ChatDatabase openForTesting(Context context, String name) {
+        return new ChatDatabase(context.getApplicationContext(), name);
+    }
+
+    private ChatDatabase(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    private ChatDatabase(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Lets the reads of AppExecutors.diskRead() run while the writes of AppExecutors.diskIO() are in progress
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createCaches(db);
+        createOutbox(db);
+        createCosts(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Cache tables mirror Firestore, so they can be rebuilt from scratch
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+        createCaches(db);
+        // The outbox holds messages that exist nowhere else, so it is kept across upgrades
+        createOutbox(db);
+        if (oldVersion == 4) {
+            // Peer summaries written to the inbox entries along with each message
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COLUMN_SENDER_IMAGE_HASH + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COLUMN_RECEIVER_NAME + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COLUMN_RECEIVER_IMAGE_HASH + " TEXT");
+        }
+        if (oldVersion >= 4 && oldVersion < 9) {
+            // Messages refused by the server, kept for display instead of holding back the queue
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " + COLUMN_FAILED + " INTEGER NOT NULL DEFAULT 0");
+        }
+        // Daily totals are history rather than a cache, so they are kept too
+        createCosts(db);
+    }
+
+    /**
+     * Creates the tables that only mirror Firestore.
+     */
+    private static void createCaches(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_USERS + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_NAME + " TEXT COLLATE NOCASE, " // Orders and compares names as search matches them
+                + COLUMN_EMAIL + " TEXT, "
+                + COLUMN_IMAGE + " TEXT, "
+                + COLUMN_IMAGE_HASH + " TEXT, "
+                + COLUMN_TOKEN + " TEXT, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0)");
+        // Serves the directory ordering, name prefix searches, and the watermark lookup of the sync
+        db.execSQL("CREATE INDEX " + INDEX_USERS_NAME + " ON " + TABLE_USERS + " (" + COLUMN_NAME + ", " + COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX index_users_updated_at ON " + TABLE_USERS + " (" + COLUMN_UPDATED_AT + ")");
+
+        // External content FTS table: it only stores the index, the text stays in the users table.
+        // Prefix indexes keep the short prefixes typed first as fast as whole words.
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_USERS_FTS + " USING fts4(content=\"" + TABLE_USERS + "\", "
+                + "prefix=\"1,2,3\", " + COLUMN_NAME + ", " + COLUMN_EMAIL + ")");
+        db.execSQL("CREATE TRIGGER users_before_update BEFORE UPDATE ON " + TABLE_USERS + " BEGIN "
+                + "DELETE FROM " + TABLE_USERS_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER users_before_delete BEFORE DELETE ON " + TABLE_USERS + " BEGIN "
+                + "DELETE FROM " + TABLE_USERS_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER users_after_update AFTER UPDATE ON " + TABLE_USERS + " BEGIN "
+                + "INSERT INTO " + TABLE_USERS_FTS + " (docid, " + COLUMN_NAME + ", " + COLUMN_EMAIL + ") "
+                + "VALUES (new.rowid, new." + COLUMN_NAME + ", new." + COLUMN_EMAIL + "); END");
+        db.execSQL("CREATE TRIGGER users_after_insert AFTER INSERT ON " + TABLE_USERS + " BEGIN "
+                + "INSERT INTO " + TABLE_USERS_FTS + " (docid, " + COLUMN_NAME + ", " + COLUMN_EMAIL + ") "
+                + "VALUES (new.rowid, new." + COLUMN_NAME + ", new." + COLUMN_EMAIL + "); END");
+    }
+
+    /**
+     * Creates the outbox. The sequence gives the order messages are delivered in. Failed messages are skipped.
+     */
+    private static void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " ("
+                + COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_ID + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_CONVERSATION_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_SENDER_NAME + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_TEXT + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                + COLUMN_SENDER_IMAGE_HASH + " TEXT, "
+                + COLUMN_RECEIVER_NAME + " TEXT, "
+                + COLUMN_RECEIVER_IMAGE_HASH + " TEXT, "
+                + COLUMN_FAILED + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    /**
+     * Creates the daily totals of Firestore usage, one row per day, screen and operation.
+     */
+    private static void createCosts(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_COSTS + " ("
+                + COLUMN_DAY + " TEXT NOT NULL, "
+                + COLUMN_SCREEN + " TEXT NOT NULL, "
+                + COLUMN_OPERATION + " TEXT NOT NULL, "
+                + COLUMN_READS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_WRITES + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_BYTES + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + COLUMN_DAY + ", " + COLUMN_SCREEN + ", " + COLUMN_OPERATION + "))");
+    }
+}
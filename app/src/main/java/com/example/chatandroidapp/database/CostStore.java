@@ -0,0 +1,123 @@
+package com.example.chatandroidapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CostStore keeps the daily totals of the Firestore usage of each screen and operation.
+ * Every method does disk I/O and must be called from a background thread.
+ */
+public class CostStore {
+
+    /**
+     * The usage of one operation on one screen during a day.
+     */
+    public static class Total {
+        public final String screen;
+        public final String operation;
+        public final long reads;
+        public final long writes;
+        public final long bytes;
+
+        Total(String screen, String operation, long reads, long writes, long bytes) {
+            this.screen = screen;
+            this.operation = operation;
+            this.reads = reads;
+            this.writes = writes;
+            this.bytes = bytes;
+        }
+    }
+
+    private final ChatDatabase chatDatabase;
+
+    /**
+     * Constructor for CostStore.
+     *
+     * @param context The context used to open the database.
+     */
+    public CostStore(Context context) {
+        chatDatabase = ChatDatabase.getInstance(context);
+    }
+
+    /**
+     * Adds usage to the total of a day, screen and operation.
+     *
+     * @param day       The day, as yyyy-MM-dd.
+     * @param screen    The screen the usage is attributed to.
+     * @param operation The operation.
+     * @param reads     The documents read.
+     * @param writes    The documents written.
+     * @param bytes     The estimated bytes received.
+     */
+    public void add(String day, String screen, String operation, long reads, long writes, long bytes) {
+        SQLiteDatabase db = chatDatabase.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + ChatDatabase.TABLE_COSTS + " SET "
+                            + ChatDatabase.COLUMN_READS + " = " + ChatDatabase.COLUMN_READS + " + ?, "
+                            + ChatDatabase.COLUMN_WRITES + " = " + ChatDatabase.COLUMN_WRITES + " + ?, "
+                            + ChatDatabase.COLUMN_BYTES + " = " + ChatDatabase.COLUMN_BYTES + " + ? WHERE "
+                            + ChatDatabase.COLUMN_DAY + " = ? AND " + ChatDatabase.COLUMN_SCREEN + " = ? AND "
+                            + ChatDatabase.COLUMN_OPERATION + " = ?",
+                    new Object[]{reads, writes, bytes, day, screen, operation});
+            if (changes(db) == 0) {
+                ContentValues values = new ContentValues();
+                values.put(ChatDatabase.COLUMN_DAY, day);
+                values.put(ChatDatabase.COLUMN_SCREEN, screen);
+                values.put(ChatDatabase.COLUMN_OPERATION, operation);
+                values.put(ChatDatabase.COLUMN_READS, reads);
+                values.put(ChatDatabase.COLUMN_WRITES, writes);
+                values.put(ChatDatabase.COLUMN_BYTES, bytes);
+                db.insert(ChatDatabase.TABLE_COSTS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param day The day, as yyyy-MM-dd.
+     * @return The totals of the day, most reads first.
+     */
+    public List<Total> getTotals(String day) {
+        List<Total> totals = new ArrayList<>();
+        try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                ChatDatabase.TABLE_COSTS, null, ChatDatabase.COLUMN_DAY + " = ?", new String[]{day},
+                null, null, ChatDatabase.COLUMN_READS + " DESC")) {
+            while (cursor.moveToNext()) {
+                totals.add(new Total(
+                        cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_SCREEN)),
+                        cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_OPERATION)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_READS)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_WRITES)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_BYTES))));
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Deletes the totals of the days before a given day.
+     *
+     * @param day The first day kept, as yyyy-MM-dd, which sorts like the dates it stands for.
+     */
+    public void deleteBefore(String day) {
+        chatDatabase.getWritableDatabase().delete(ChatDatabase.TABLE_COSTS,
+                ChatDatabase.COLUMN_DAY + " < ?", new String[]{day});
+    }
+
+    /**
+     * @return The number of rows changed by the last statement.
+     */
+    private static long changes(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT changes()", null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.chatandroidapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.chatandroidapp.module.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OutboxStore keeps the messages sent by the user until Firestore acknowledges them, or refuses them
+ * for good, in which case they are kept as failed so that the conversation can show them.
+ * Messages are read back in the order they were queued. Every method does disk I/O and must be
+ * called from a background thread.
+ */
+public class OutboxStore {
+
+    private static final String[] COLUMNS = {
+            ChatDatabase.COLUMN_ID,
+            ChatDatabase.COLUMN_CONVERSATION_ID,
+            ChatDatabase.COLUMN_SENDER_ID,
+            ChatDatabase.COLUMN_SENDER_NAME,
+            ChatDatabase.COLUMN_RECEIVER_ID,
+            ChatDatabase.COLUMN_TEXT,
+            ChatDatabase.COLUMN_TIMESTAMP,
+            ChatDatabase.COLUMN_SENDER_IMAGE_HASH,
+            ChatDatabase.COLUMN_RECEIVER_NAME,
+            ChatDatabase.COLUMN_RECEIVER_IMAGE_HASH,
+            ChatDatabase.COLUMN_FAILED
+    };
+    private static final String WHERE_NOT_FAILED = ChatDatabase.COLUMN_FAILED + " = 0";
+
+    private final ChatDatabase chatDatabase;
+
+    /**
+     * Constructor for OutboxStore.
+     *
+     * @param context The context used to open the database.
+     */
+    public OutboxStore(Context context) {
+        chatDatabase = ChatDatabase.getInstance(context);
+    }
+
+    /**
+     * Queues a message after the ones already queued. A message already queued is left untouched.
+     *
+     * @param message The message to queue, with its client-generated ID.
+     */
+    public void enqueue(ChatMessage message) {
+        ContentValues values = new ContentValues();
+        values.put(ChatDatabase.COLUMN_ID, message.id);
+        values.put(ChatDatabase.COLUMN_CONVERSATION_ID, message.conversationId);
+        values.put(ChatDatabase.COLUMN_SENDER_ID, message.senderId);
+        values.put(ChatDatabase.COLUMN_SENDER_NAME, message.senderName);
+        values.put(ChatDatabase.COLUMN_RECEIVER_ID, message.receiverId);
+        values.put(ChatDatabase.COLUMN_TEXT, message.text);
+        values.put(ChatDatabase.COLUMN_TIMESTAMP, message.timestamp);
+        values.put(ChatDatabase.COLUMN_SENDER_IMAGE_HASH, message.senderImageHash);
+        values.put(ChatDatabase.COLUMN_RECEIVER_NAME, message.receiverName);
+        values.put(ChatDatabase.COLUMN_RECEIVER_IMAGE_HASH, message.receiverImageHash);
+        chatDatabase.getWritableDatabase().insertWithOnConflict(ChatDatabase.TABLE_OUTBOX, null, values,
+                SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * Reads the oldest messages waiting for delivery without removing them. Failed messages are skipped.
+     *
+     * @param limit The maximum number of messages to read.
+     * @return The messages, in the order they were queued.
+     */
+    public List<ChatMessage> peek(int limit) {
+        try (Cursor cursor = chatDatabase.getReadableDatabase().query(ChatDatabase.TABLE_OUTBOX, COLUMNS,
+                WHERE_NOT_FAILED, null, null, null, ChatDatabase.COLUMN_SEQUENCE, String.valueOf(limit))) {
+            return readMessages(cursor);
+        }
+    }
+
+    /**
+     * Reads the queued messages of a conversation, failed ones included.
+     *
+     * @param conversationId The ID of the conversation.
+     * @return The messages, in the order they were queued.
+     */
+    public List<ChatMessage> getPending(String conversationId) {
+        try (Cursor cursor = chatDatabase.getReadableDatabase().query(ChatDatabase.TABLE_OUTBOX, COLUMNS,
+                ChatDatabase.COLUMN_CONVERSATION_ID + " = ?", new String[]{conversationId},
+                null, null, ChatDatabase.COLUMN_SEQUENCE)) {
+            return readMessages(cursor);
+        }
+    }
+
+    /**
+     * @return True if no message is waiting for delivery.
+     */
+    public boolean isEmpty() {
+        return DatabaseUtils.queryNumEntries(chatDatabase.getReadableDatabase(), ChatDatabase.TABLE_OUTBOX,
+                WHERE_NOT_FAILED) == 0;
+    }
+
+    /**
+     * Removes delivered messages in a single transaction.
+     *
+     * @param messages The messages to remove.
+     */
+    public void remove(List<ChatMessage> messages) {
+        SQLiteDatabase db = chatDatabase.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ChatMessage message : messages) {
+                db.delete(ChatDatabase.TABLE_OUTBOX, ChatDatabase.COLUMN_ID + " = ?", new String[]{message.id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks messages as failed in a single transaction, so that they are no longer delivered.
+     *
+     * @param messages The messages the server refused.
+     */
+    public void markFailed(List<ChatMessage> messages) {
+        SQLiteDatabase db = chatDatabase.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(ChatDatabase.COLUMN_FAILED, 1);
+        db.beginTransaction();
+        try {
+            for (ChatMessage message : messages) {
+                db.update(ChatDatabase.TABLE_OUTBOX, values, ChatDatabase.COLUMN_ID + " = ?", new String[]{message.id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Removes every queued message, failed ones included.
+     */
+    public void clear() {
+        chatDatabase.getWritableDatabase().delete(ChatDatabase.TABLE_OUTBOX, null, null);
+    }
+
+    private List<ChatMessage> readMessages(Cursor cursor) {
+        List<ChatMessage> messages = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            ChatMessage message = new ChatMessage();
+            message.id = cursor.getString(0);
+            message.conversationId = cursor.getString(1);
+            message.senderId = cursor.getString(2);
+            message.senderName = cursor.getString(3);
+            message.receiverId = cursor.getString(4);
+            message.text = cursor.getString(5);
+            message.timestamp = cursor.getLong(6);
+            message.senderImageHash = cursor.getString(7);
+            message.receiverName = cursor.getString(8);
+            message.receiverImageHash = cursor.getString(9);
+            message.isFailed = cursor.getInt(10) != 0;
+            message.isPending = !message.isFailed;
+            messages.add(message);
+        }
+        return messages;
+    }
+}
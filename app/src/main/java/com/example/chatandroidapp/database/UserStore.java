@@ -0,0 +1,307 @@
+package com.example.chatandroidapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.chatandroidapp.module.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * UserStore reads and writes the local copy of the user directory.
+ * Every method does disk I/O and must be called from a background thread.
+ */
+public class UserStore {
+
+    private static final long SORTED_MATCHES_MAX = 2_000; // Beyond it, search walks the name index instead of sorting
+    private static final String PREFIX_RANGE_END = "\uFFFF"; // Sorts after any character a name continues with
+
+    private final ChatDatabase chatDatabase;
+
+    /**
+     * Constructor for UserStore.
+     *
+     * @param context The context used to open the database.
+     */
+    public UserStore(Context context) {
+        this(ChatDatabase.getInstance(context));
+    }
+
+    /**
+     * Constructor for UserStore over a given database.
+     *
+     * @param chatDatabase The database holding the directory.
+     */
+    @VisibleForTesting
+    public UserStore(ChatDatabase chatDatabase) {
+        this.chatDatabase = chatDatabase;
+    }
+
+    /**
+     * Inserts or updates users in a single transaction. The search index follows through triggers.
+     *
+     * @param users     The users to write.
+     * @param updatedAt The update time of each user in milliseconds, in the same order.
+     */
+    public void upsert(List<User> users, List<Long> updatedAt) {
+        SQLiteDatabase db = chatDatabase.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                values.clear();
+                values.put(ChatDatabase.COLUMN_ID, user.id);
+                values.put(ChatDatabase.COLUMN_NAME, user.name);
+                values.put(ChatDatabase.COLUMN_EMAIL, user.email);
+                values.put(ChatDatabase.COLUMN_IMAGE, user.image);
+                values.put(ChatDatabase.COLUMN_IMAGE_HASH, user.imageHash);
+                values.put(ChatDatabase.COLUMN_TOKEN, user.token);
+                values.put(ChatDatabase.COLUMN_UPDATED_AT, updatedAt.get(i));
+                // Update in place rather than REPLACE, which would delete the row without firing the FTS triggers
+                if (db.update(ChatDatabase.TABLE_USERS, values, ChatDatabase.COLUMN_ID + " = ?", new String[]{user.id}) == 0) {
+                    db.insert(ChatDatabase.TABLE_USERS, null, values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the first users of the directory, ordered by name.
+     *
+     * @param limit          The maximum number of users to return.
+     * @param excludedUserId The ID of a user to leave out, or null to keep everyone.
+     * @return The users, ordered by name then ID.
+     */
+    public List<User> getUsers(int limit, String excludedUserId) {
+        return getUsersFrom(null, false, limit, excludedUserId);
+    }
+
+    /**
+     * Returns the users following a user in the directory. Pages are read from their first row on through
+     * the (name, ID) index, so that the cost of a page does not grow with the number of rows before it.
+     *
+     * @param after          The user the page follows, or null to start from the first user.
+     * @param inclusive      Whether the page starts with the user it follows, to re-read a page in place.
+     * @param limit          The maximum number of users to return.
+     * @param excludedUserId The ID of a user to leave out, or null to keep everyone.
+     * @return The users, ordered by name then ID.
+     */
+    public List<User> getUsersFrom(User after, boolean inclusive, int limit, String excludedUserId) {
+        List<String> args = new ArrayList<>();
+        String selection = null;
+        if (after != null) {
+            String operator = inclusive ? " >= ?" : " > ?";
+            // Ascending order puts users without a name first
+            if (after.name == null) {
+                selection = "(" + ChatDatabase.COLUMN_NAME + " IS NULL AND " + ChatDatabase.COLUMN_ID + operator
+                        + ") OR " + ChatDatabase.COLUMN_NAME + " IS NOT NULL";
+                args.add(after.id);
+            } else {
+                selection = ChatDatabase.COLUMN_NAME + " > ? OR (" + ChatDatabase.COLUMN_NAME + " = ? AND "
+                        + ChatDatabase.COLUMN_ID + operator + ")";
+                args.add(after.name);
+                args.add(after.name);
+                args.add(after.id);
+            }
+        }
+        return page(selection, args, excludedUserId, "", limit);
+    }
+
+    /**
+     * Returns the users preceding a user in the directory, to page back up through it.
+     *
+     * @param before         The user the page precedes.
+     * @param limit          The maximum number of users to return.
+     * @param excludedUserId The ID of a user to leave out, or null to keep everyone.
+     * @return The users, ordered by name then ID.
+     */
+    public List<User> getUsersBefore(User before, int limit, String excludedUserId) {
+        List<String> args = new ArrayList<>();
+        String selection;
+        if (before.name == null) {
+            selection = ChatDatabase.COLUMN_NAME + " IS NULL AND " + ChatDatabase.COLUMN_ID + " < ?";
+            args.add(before.id);
+        } else {
+            selection = ChatDatabase.COLUMN_NAME + " IS NULL OR " + ChatDatabase.COLUMN_NAME + " < ? OR ("
+                    + ChatDatabase.COLUMN_NAME + " = ? AND " + ChatDatabase.COLUMN_ID + " < ?)";
+            args.add(before.name);
+            args.add(before.name);
+            args.add(before.id);
+        }
+        // Read backwards from the anchor, then restore the order of the directory
+        List<User> users = page(selection, args, excludedUserId, " DESC", limit);
+        Collections.reverse(users);
+        return users;
+    }
+
+    /**
+     * Reads a page of the directory in (name, ID) order.
+     *
+     * @param selection      The bounds of the page, or null for none.
+     * @param args           The arguments of the bounds.
+     * @param excludedUserId The ID of a user to leave out, or null to keep everyone.
+     * @param direction      "" for ascending order, " DESC" for descending order.
+     * @param limit          The maximum number of users to return.
+     * @return The users of the page.
+     */
+    private List<User> page(String selection, List<String> args, String excludedUserId, String direction, int limit) {
+        if (excludedUserId != null) {
+            selection = (selection != null ? "(" + selection + ") AND " : "") + ChatDatabase.COLUMN_ID + " != ?";
+            args.add(excludedUserId);
+        }
+
+        List<User> users = new ArrayList<>();
+        try (Cursor cursor = chatDatabase.getReadableDatabase().query(
+                ChatDatabase.TABLE_USERS, null, selection, args.toArray(new String[0]), null, null,
+                ChatDatabase.COLUMN_NAME + direction + ", " + ChatDatabase.COLUMN_ID + direction,
+                String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                users.add(toUser(cursor));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Searches the users whose name or email has words starting with every word of the query.
+     * Users whose name starts with the query are ranked first, then results are ordered by name.
+     * <p>
+     * Names starting with the query are read as a range of the (name, ID) index, which stops at the limit.
+     * The other matches come from the full-text index: a few are cheapest to sort, while many are found
+     * sooner by walking the name index in order, as they are dense enough to reach the limit quickly.
+     *
+     * @param query          The text typed by the user.
+     * @param limit          The maximum number of users to return.
+     * @param excludedUserId The ID of a user to leave out, or null to keep everyone.
+     * @return The matching users, best matches first.
+     */
+    public List<User> search(String query, int limit, String excludedUserId) {
+        List<User> users = new ArrayList<>();
+        String match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return users;
+        }
+
+        SQLiteDatabase db = chatDatabase.getReadableDatabase();
+        String prefix = query.trim();
+        String excluded = excludedUserId != null ? excludedUserId : "";
+        // Names starting with the prefix lie in [prefix, prefix + U+FFFF), which LIKE narrows down exactly
+        String upperBound = prefix + PREFIX_RANGE_END;
+        String pattern = escapeLike(prefix) + "%";
+        String nameInRange = ChatDatabase.COLUMN_NAME + " >= ? AND " + ChatDatabase.COLUMN_NAME + " < ?";
+        read(db, "SELECT * FROM " + ChatDatabase.TABLE_USERS
+                        + " WHERE " + nameInRange
+                        + " AND " + ChatDatabase.COLUMN_NAME + " LIKE ? ESCAPE '\\'"
+                        + " AND " + ChatDatabase.COLUMN_ID + " != ?",
+                new String[]{prefix, upperBound, pattern, excluded}, limit, users);
+        if (users.size() >= limit) {
+            return users;
+        }
+
+        long matches = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + ChatDatabase.TABLE_USERS_FTS
+                + " WHERE " + ChatDatabase.TABLE_USERS_FTS + " MATCH ?", new String[]{match});
+        String source = matches <= SORTED_MATCHES_MAX
+                ? ChatDatabase.TABLE_USERS
+                : ChatDatabase.TABLE_USERS + " INDEXED BY " + ChatDatabase.INDEX_USERS_NAME;
+        read(db, "SELECT * FROM " + source
+                        + " WHERE rowid IN (SELECT docid FROM " + ChatDatabase.TABLE_USERS_FTS
+                        + " WHERE " + ChatDatabase.TABLE_USERS_FTS + " MATCH ?)"
+                        + " AND NOT (" + ChatDatabase.COLUMN_NAME + " IS NOT NULL AND " + nameInRange
+                        + " AND " + ChatDatabase.COLUMN_NAME + " LIKE ? ESCAPE '\\')"
+                        + " AND " + ChatDatabase.COLUMN_ID + " != ?",
+                new String[]{match, prefix, upperBound, pattern, excluded},
+                limit - users.size(), users);
+        return users;
+    }
+
+    /**
+     * Reads users in (name, ID) order.
+     *
+     * @param db    The database.
+     * @param sql   The query, without its ORDER BY and LIMIT clauses.
+     * @param args  The arguments of the query.
+     * @param limit The maximum number of users to read.
+     * @param users The list to add the users to.
+     */
+    private static void read(SQLiteDatabase db, String sql, String[] args, int limit, List<User> users) {
+        try (Cursor cursor = db.rawQuery(sql + " ORDER BY " + ChatDatabase.COLUMN_NAME + ", " + ChatDatabase.COLUMN_ID
+                + " LIMIT " + limit, args)) {
+            while (cursor.moveToNext()) {
+                users.add(toUser(cursor));
+            }
+        }
+    }
+
+    /**
+     * Escapes the wildcards of LIKE, so that typed text only matches itself.
+     *
+     * @param text The text typed by the user.
+     * @return The text with '%', '_' and the escape character '\' escaped by '\'.
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Turns typed text into an FTS expression matching every word as a prefix.
+     *
+     * @param query The text typed by the user.
+     * @return The expression, e.g. {@code jo* do*} for "Jo Do", or an empty string if there is no word.
+     */
+    static String toMatchExpression(String query) {
+        StringBuilder builder = new StringBuilder();
+        // Split like the FTS "simple" tokenizer does, so that punctuation never reaches the MATCH syntax
+        for (String token : query.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(token).append('*');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param userId The ID of a user.
+     * @return The user, or null if the directory has not synced it yet.
+     */
+    public User getUser(String userId) {
+        try (Cursor cursor = chatDatabase.getReadableDatabase().query(ChatDatabase.TABLE_USERS, null,
+                ChatDatabase.COLUMN_ID + " = ?", new String[]{userId}, null, null, null)) {
+            return cursor.moveToFirst() ? toUser(cursor) : null;
+        }
+    }
+
+    /**
+     * @return The latest update time synced so far in milliseconds, or 0 if nothing was synced yet.
+     */
+    public long getWatermark() {
+        try (Cursor cursor = chatDatabase.getReadableDatabase().rawQuery(
+                "SELECT MAX(" + ChatDatabase.COLUMN_UPDATED_AT + ") FROM " + ChatDatabase.TABLE_USERS, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static User toUser(Cursor cursor) {
+        User user = new User();
+        user.id = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_ID));
+        user.name = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_NAME));
+        user.email = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_EMAIL));
+        user.image = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_IMAGE));
+        user.imageHash = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_IMAGE_HASH));
+        user.token = cursor.getString(cursor.getColumnIndexOrThrow(ChatDatabase.COLUMN_TOKEN));
+        return user;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.chatandroidapp.firebase;
+
+import android.util.Base64;
+
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.ImageImporter;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+/**
+ * AvatarStore keeps profile images out of the Users collection.
+ * Each avatar is stored as raw bytes in its own document of the Avatars collection, keyed by user ID,
+ * while the user document only carries a short content hash. Queries on Users therefore never
+ * transfer image bytes, and a client only fetches the avatars of the rows it actually shows.
+ */
+public class AvatarStore {
+
+    private AvatarStore() {
+    }
+
+    /**
+     * Computes the content hash stored in the user document.
+     *
+     * @param bytes The raw image bytes.
+     * @return The first 16 hexadecimal characters of the SHA-1 of the bytes.
+     */
+    public static String hashOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the write of an avatar to a batch, so that it lands atomically with its user document.
+     *
+     * @param database The Firestore instance.
+     * @param batch    The batch to add the write to.
+     * @param userId   The ID of the user owning the avatar.
+     * @param bytes    The raw image bytes.
+     * @param hash     The content hash of the bytes.
+     */
+    public static void put(FirebaseFirestore database, WriteBatch batch, String userId, byte[] bytes, String hash) {
+        batch.set(reference(database, userId), toDocument(bytes, hash));
+    }
+
+    /**
+     * Adds the writes of every size of an avatar to a transaction, so that they land atomically with its
+     * user document. The thumbnail goes to the avatar document read by lists, the larger sizes to its
+     * Sizes sub-collection, so that lists never transfer them.
+     *
+     * @param database    The Firestore instance.
+     * @param transaction The transaction to add the writes to.
+     * @param userId      The ID of the user owning the avatar.
+     * @param avatar      The sizes of the avatar.
+     * @param hash        The content hash of the thumbnail.
+     */
+    public static void put(FirebaseFirestore database, Transaction transaction, String userId,
+                           ImageImporter.Variants avatar, String hash) {
+        DocumentReference reference = reference(database, userId);
+        transaction.set(reference, toDocument(avatar.thumbnail, hash));
+        transaction.set(reference.collection(Constants.KEY_COLLECTION_AVATAR_SIZES)
+                .document(Constants.AVATAR_SIZE_PROFILE), toDocument(avatar.profile, hash));
+        transaction.set(reference.collection(Constants.KEY_COLLECTION_AVATAR_SIZES)
+                .document(Constants.AVATAR_SIZE_FULL), toDocument(avatar.full, hash));
+    }
+
+    /**
+     * Fetches the raw bytes of an avatar without blocking the calling thread.
+     *
+     * @param database The Firestore instance.
+     * @param userId   The ID of the user owning the avatar.
+     * @return A task resulting in the raw image bytes, or in null if the user has no avatar.
+     */
+    public static Task<byte[]> fetch(FirebaseFirestore database, String userId) {
+        return TaskTracer.trace("avatar.fetch", reference(database, userId).get()).continueWith(task -> {
+            Blob blob = task.getResult().getBlob(Constants.KEY_IMAGE);
+            return blob != null ? blob.toBytes() : null;
+        });
+    }
+
+    /**
+     * Moves the inline Base64 avatar of a user document created before the Avatars collection
+     * into its own document, and replaces it with its hash.
+     *
+     * @param database The Firestore instance.
+     * @param document The user document.
+     * @return The hash of the migrated avatar, or the hash already present if there was nothing to migrate.
+     */
+    public static String migrateInlineImage(FirebaseFirestore database, DocumentSnapshot document) {
+        String encodedImage = document.getString(Constants.KEY_IMAGE);
+        if (encodedImage == null || encodedImage.isEmpty()) {
+            return document.getString(Constants.KEY_IMAGE_HASH);
+        }
+
+        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+        String hash = hashOf(bytes);
+
+        HashMap<String, Object> updates = new HashMap<>();
+        updates.put(Constants.KEY_IMAGE, FieldValue.delete());
+        updates.put(Constants.KEY_IMAGE_HASH, hash);
+        updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+
+        WriteBatch batch = database.batch();
+        put(database, batch, document.getId(), bytes, hash);
+        batch.update(document.getReference(), updates);
+        TaskTracer.trace("avatar.migrate", batch.commit(), 2);
+        return hash;
+    }
+
+    private static HashMap<String, Object> toDocument(byte[] bytes, String hash) {
+        HashMap<String, Object> avatar = new HashMap<>();
+        avatar.put(Constants.KEY_IMAGE, Blob.fromBytes(bytes));
+        avatar.put(Constants.KEY_IMAGE_HASH, hash);
+        return avatar;
+    }
+
+    private static DocumentReference reference(FirebaseFirestore database, String userId) {
+        return database.collection(Constants.KEY_COLLECTION_AVATARS).document(userId);
+    }
+}
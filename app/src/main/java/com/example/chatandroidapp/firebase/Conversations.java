@@ -0,0 +1,117 @@
+package com.example.chatandroidapp.firebase;
+
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Conversations maps one-to-one conversations onto Firestore.
+ * A conversation between two users is identified by their two IDs in sorted order, so both sides
+ * find the same document without a lookup, and its messages live in its Messages sub-collection.
+ */
+public class Conversations {
+
+    private static long lastTimestamp; // Creation time of the last message created on this device
+
+    private Conversations() {
+    }
+
+    /**
+     * @param userId      The ID of one participant.
+     * @param otherUserId The ID of the other participant.
+     * @return The ID of their conversation, the same whichever participant asks.
+     */
+    public static String idOf(String userId, String otherUserId) {
+        return userId.compareTo(otherUserId) < 0 ? userId + "_" + otherUserId : otherUserId + "_" + userId;
+    }
+
+    /**
+     * @param database       The Firestore instance.
+     * @param conversationId The ID of the conversation.
+     * @return The messages of the conversation.
+     */
+    public static CollectionReference messages(FirebaseFirestore database, String conversationId) {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(conversationId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES);
+    }
+
+    /**
+     * Creates a message to be queued in the {@link MessageOutbox}.
+     * Its ID is generated on the device and starts with its creation time, so that messages written in
+     * the same batch, which share a server timestamp, still sort in the order they were sent.
+     *
+     * @param senderId        The ID of the sender.
+     * @param senderName      The name of the sender.
+     * @param senderImageHash The avatar hash of the sender, shown in the receiver's inbox.
+     * @param receiver        The receiver.
+     * @param text            The text of the message.
+     * @return The message, pending until the server acknowledges it.
+     */
+    public static ChatMessage newMessage(String senderId, String senderName, String senderImageHash,
+                                         User receiver, String text) {
+        ChatMessage message = new ChatMessage();
+        message.timestamp = nextTimestamp();
+        message.id = String.format(Locale.US, "%015d_%s", message.timestamp,
+                UUID.randomUUID().toString().substring(0, 8));
+        message.conversationId = idOf(senderId, receiver.id);
+        message.senderId = senderId;
+        message.senderName = senderName;
+        message.senderImageHash = senderImageHash;
+        message.receiverId = receiver.id;
+        message.receiverName = receiver.name;
+        message.receiverImageHash = receiver.imageHash;
+        message.text = text;
+        message.isPending = true;
+        return message;
+    }
+
+    /**
+     * @param message A message created by {@link #newMessage(String, String, String, User, String)}.
+     * @return The fields of its document, timed by the server when written.
+     */
+    public static HashMap<String, Object> toDocument(ChatMessage message) {
+        HashMap<String, Object> document = new HashMap<>();
+        document.put(Constants.KEY_SENDER_ID, message.senderId);
+        document.put(Constants.KEY_SENDER_NAME, message.senderName);
+        document.put(Constants.KEY_RECEIVER_ID, message.receiverId);
+        document.put(Constants.KEY_MESSAGE, message.text);
+        document.put(Constants.KEY_TIMESTAMP, FieldValue.serverTimestamp());
+        return document;
+    }
+
+    /**
+     * @return The current time in milliseconds, strictly greater than the one returned before.
+     */
+    private static synchronized long nextTimestamp() {
+        lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+        return lastTimestamp;
+    }
+
+    /**
+     * @param document A message document.
+     * @return The message, timed with the local estimate while the server has not acknowledged it.
+     */
+    public static ChatMessage toMessage(DocumentSnapshot document) {
+        ChatMessage message = new ChatMessage();
+        message.id = document.getId();
+        message.conversationId = document.getReference().getParent().getParent().getId();
+        message.senderId = document.getString(Constants.KEY_SENDER_ID);
+        message.senderName = document.getString(Constants.KEY_SENDER_NAME);
+        message.receiverId = document.getString(Constants.KEY_RECEIVER_ID);
+        message.text = document.getString(Constants.KEY_MESSAGE);
+        Timestamp timestamp = document.getTimestamp(Constants.KEY_TIMESTAMP,
+                DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        message.timestamp = timestamp != null ? timestamp.toDate().getTime() : 0;
+        return message;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.chatandroidapp.firebase;
+
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.ImageImporter;
+import com.example.chatandroidapp.utilities.PasswordHasher;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CredentialStore signs users in without ever querying the Users collection by password.
+ * Credentials live in the Emails collection, one document per normalized email, holding the ID of
+ * the user and a salted PBKDF2 hash of the password. Signing in is a single document lookup,
+ * followed by a verification that runs on a bounded background executor.
+ */
+public class CredentialStore {
+
+    // One hashing thread and a short queue: a burst of attempts is rejected rather than piling up, see hashTask
+    private static final ExecutorService HASH_EXECUTOR = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4), runnable -> new Thread(runnable, "PasswordHasher"));
+
+    private CredentialStore() {
+    }
+
+    /**
+     * Normalizes an email so that the same address always maps to the same document.
+     *
+     * @param email The email as typed.
+     * @return The trimmed, lower-case email.
+     */
+    public static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param database The Firestore instance.
+     * @param email    The email, normalized or not.
+     * @return The credentials document of the email.
+     */
+    public static DocumentReference reference(FirebaseFirestore database, String email) {
+        return database.collection(Constants.KEY_COLLECTION_EMAILS).document(normalizeEmail(email));
+    }
+
+    /**
+     * Builds the credentials document of a new account. The password is hashed in the background.
+     *
+     * @param userId   The ID of the user document.
+     * @param password The password chosen by the user.
+     * @return A task resolving to the fields of the credentials document, or failing if too many hashes are queued.
+     */
+    public static Task<HashMap<String, Object>> newCredentials(String userId, String password) {
+        return hashTask(() -> {
+            String salt = PasswordHasher.newSalt();
+            HashMap<String, Object> credentials = new HashMap<>();
+            credentials.put(Constants.KEY_USER_ID, userId);
+            credentials.put(Constants.KEY_PASSWORD_SALT, salt);
+            credentials.put(Constants.KEY_PASSWORD_HASH, PasswordHasher.hash(password, salt, PasswordHasher.ITERATIONS));
+            credentials.put(Constants.KEY_PASSWORD_ITERATIONS, PasswordHasher.ITERATIONS);
+            return credentials;
+        });
+    }
+
+    /**
+     * Creates an account in a single transaction: the credentials document of the email is claimed,
+     * and the user document, its avatar and its directory entry are written only if no other account holds the email.
+     * Two concurrent sign-ups with the same email therefore cannot both succeed.
+     *
+     * @param database      The Firestore instance.
+     * @param userReference The user document to create.
+     * @param user          The fields of the user document.
+     * @param email         The email of the account.
+     * @param password      The password chosen by the user.
+     * @param avatar        The sizes of the avatar.
+     * @param imageHash     The content hash of the avatar thumbnail.
+     * @return A task failing with {@link FirebaseFirestoreException.Code#ALREADY_EXISTS} if the email is taken.
+     */
+    public static Task<Void> register(FirebaseFirestore database, DocumentReference userReference,
+                                      Map<String, Object> user, String email, String password,
+                                      ImageImporter.Variants avatar, String imageHash) {
+        DocumentReference emailReference = reference(database, email);
+
+        // Hash first, so that a retried transaction does not pay for the hash again
+        return newCredentials(userReference.getId(), password).onSuccessTask(credentials ->
+                database.runTransaction(transaction -> {
+                    if (transaction.get(emailReference).exists()) {
+                        throw new FirebaseFirestoreException("Email already in use",
+                                FirebaseFirestoreException.Code.ALREADY_EXISTS);
+                    }
+                    transaction.set(emailReference, credentials);
+                    transaction.set(userReference, user);
+                    AvatarStore.put(database, transaction, userReference.getId(), avatar, imageHash);
+                    Directory.put(database, transaction, userReference.getId(), user);
+                    return null;
+                }));
+    }
+
+    /**
+     * @param exception The failure of {@link #register}.
+     * @return true if the account was not created because the email is already in use.
+     */
+    public static boolean isEmailTaken(Exception exception) {
+        return exception instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) exception).getCode() == FirebaseFirestoreException.Code.ALREADY_EXISTS;
+    }
+
+    /**
+     * Checks an email and password and returns the matching user document.
+     *
+     * @param database The Firestore instance.
+     * @param email    The email as typed.
+     * @param password The password as typed.
+     * @return A task resolving to the user document, or to null if the credentials do not match, failing with
+     * {@link FirebaseFirestoreException.Code#ALREADY_EXISTS} if a legacy account cannot claim its email.
+     */
+    public static Task<DocumentSnapshot> signIn(FirebaseFirestore database, String email, String password) {
+        return reference(database, email).get().continueWithTask(task -> {
+            DocumentSnapshot credentials = task.getResult();
+            if (!credentials.exists()) {
+                return signInLegacy(database, email, password);
+            }
+
+            String userId = credentials.getString(Constants.KEY_USER_ID);
+            String salt = credentials.getString(Constants.KEY_PASSWORD_SALT);
+            String hash = credentials.getString(Constants.KEY_PASSWORD_HASH);
+            Long iterations = credentials.getLong(Constants.KEY_PASSWORD_ITERATIONS);
+            if (userId == null || salt == null || hash == null || iterations == null) {
+                return Tasks.forResult(null);
+            }
+
+            return hashTask(() -> PasswordHasher.verify(password, salt, hash, iterations.intValue()))
+                    .continueWithTask(verification -> verification.getResult()
+                            ? database.collection(Constants.KEY_COLLECTION_USERS).document(userId).get()
+                            : Tasks.forResult(null));
+        });
+    }
+
+    /**
+     * Runs hashing work on the hashing executor.
+     *
+     * @param work The work.
+     * @param <T>  The type of its result.
+     * @return A task resolving to the result, or failing with a {@link RejectedExecutionException} when
+     * the queue is full, rather than throwing it at the caller, which may be the main thread.
+     */
+    private static <T> Task<T> hashTask(Callable<T> work) {
+        try {
+            return Tasks.call(HASH_EXECUTOR, work);
+        } catch (RejectedExecutionException e) {
+            return Tasks.forException(e);
+        }
+    }
+
+    /**
+     * Signs in an account created before the Emails collection, whose password is still stored in
+     * its user document, and moves it to hashed credentials so that this path is taken only once.
+     * Fails with {@link FirebaseFirestoreException.Code#ALREADY_EXISTS} if another account already holds the
+     * credentials of the normalized email.
+     */
+    private static Task<DocumentSnapshot> signInLegacy(FirebaseFirestore database, String email, String password) {
+        return database.collection(Constants.KEY_COLLECTION_USERS)
+                .whereEqualTo(Constants.KEY_EMAIL, email.trim())
+                .whereEqualTo(Constants.KEY_PASSWORD, password)
+                .get()
+                .continueWithTask(task -> {
+                    List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                    if (documents.isEmpty()) {
+                        return Tasks.forResult(null);
+                    }
+                    DocumentSnapshot user = documents.get(0);
+
+                    DocumentReference emailReference = reference(database, email);
+
+                    // Emails used to be stored as typed, so another legacy account may differ only by case or
+                    // whitespace: the email is claimed as in register, never taken over from its holder
+                    return newCredentials(user.getId(), password).onSuccessTask(credentials ->
+                            database.runTransaction(transaction -> {
+                                DocumentSnapshot current = transaction.get(emailReference);
+                                if (current.exists() && !user.getId().equals(current.getString(Constants.KEY_USER_ID))) {
+                                    throw new FirebaseFirestoreException("Email already in use",
+                                            FirebaseFirestoreException.Code.ALREADY_EXISTS);
+                                }
+                                HashMap<String, Object> updates = new HashMap<>();
+                                updates.put(Constants.KEY_PASSWORD, FieldValue.delete());
+                                updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+
+                                transaction.set(emailReference, credentials);
+                                transaction.update(user.getReference(), updates);
+                                return user;
+                            }));
+                });
+    }
+}
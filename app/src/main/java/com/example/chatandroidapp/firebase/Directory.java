@@ -0,0 +1,142 @@
+package com.example.chatandroidapp.firebase;
+
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Directory keeps a digest of the Users collection in a fixed number of shard documents.
+ * Each user is assigned to a shard by ID and has a compact entry there: name, email and avatar hash.
+ * Entries are written along with the user document, so a client with an empty local directory
+ * loads every user in {@link Constants#DIRECTORY_SHARD_COUNT} reads instead of one read per user.
+ */
+public class Directory {
+
+    private Directory() {
+    }
+
+    /**
+     * @param userId The ID of a user.
+     * @return The index of the shard holding the user, the same on every client.
+     */
+    static int shardIndexOf(String userId) {
+        // String.hashCode is specified by the language, so it does not vary across devices
+        return Math.floorMod(userId.hashCode(), Constants.DIRECTORY_SHARD_COUNT);
+    }
+
+    /**
+     * @param database The Firestore instance.
+     * @return Every shard of the directory.
+     */
+    public static CollectionReference shards(FirebaseFirestore database) {
+        return database.collection(Constants.KEY_COLLECTION_DIRECTORY);
+    }
+
+    /**
+     * Adds the write of a user's entry to a transaction, so that it lands atomically with the user document.
+     *
+     * @param database    The Firestore instance.
+     * @param transaction The transaction writing the user document.
+     * @param userId      The ID of the user.
+     * @param user        The fields of the user document.
+     */
+    public static void put(FirebaseFirestore database, Transaction transaction, String userId, Map<String, Object> user) {
+        transaction.set(shardOf(database, userId), toShardUpdate(userId, user), SetOptions.merge());
+    }
+
+    /**
+     * @param entry     The entry of a user in a copy of the directory, or null if it has none.
+     * @param document  The user document.
+     * @param imageHash The avatar hash of the user, which may have just been migrated out of the document.
+     * @return True if the entry holds the name, email and avatar hash of the user.
+     */
+    public static boolean isUpToDate(User entry, DocumentSnapshot document, String imageHash) {
+        return entry != null
+                && Objects.equals(entry.name, document.getString(Constants.KEY_NAME))
+                && Objects.equals(entry.email, document.getString(Constants.KEY_EMAIL))
+                && Objects.equals(entry.imageHash, imageHash);
+    }
+
+    /**
+     * Writes the entry of an existing user, for accounts created before the directory existed.
+     *
+     * @param database  The Firestore instance.
+     * @param document  The user document.
+     * @param imageHash The avatar hash of the user, which may have just been migrated out of the document.
+     * @return The task of the write.
+     */
+    public static Task<Void> put(FirebaseFirestore database, DocumentSnapshot document, String imageHash) {
+        HashMap<String, Object> user = new HashMap<>();
+        user.put(Constants.KEY_NAME, document.getString(Constants.KEY_NAME));
+        user.put(Constants.KEY_EMAIL, document.getString(Constants.KEY_EMAIL));
+        user.put(Constants.KEY_IMAGE_HASH, imageHash);
+        return TaskTracer.trace("directory.put",
+                shardOf(database, document.getId()).set(toShardUpdate(document.getId(), user), SetOptions.merge()), 1);
+    }
+
+    /**
+     * @param shard A shard of the directory.
+     * @return The users of the shard.
+     */
+    public static List<User> toUsers(DocumentSnapshot shard) {
+        Object entries = shard.get(Constants.KEY_ENTRIES);
+        return entries instanceof Map ? toUsers((Map<?, ?>) entries) : new ArrayList<>();
+    }
+
+    /**
+     * @param entries The entries of a shard, by user ID.
+     * @return The users of the entries.
+     */
+    public static List<User> toUsers(Map<?, ?> entries) {
+        List<User> users = new ArrayList<>(entries.size());
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> fields = (Map<?, ?>) entry.getValue();
+            User user = new User();
+            user.id = (String) entry.getKey();
+            user.name = (String) fields.get(Constants.KEY_NAME);
+            user.email = (String) fields.get(Constants.KEY_EMAIL);
+            user.imageHash = (String) fields.get(Constants.KEY_IMAGE_HASH);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static DocumentReference shardOf(FirebaseFirestore database, String userId) {
+        return shards(database).document(String.valueOf(shardIndexOf(userId)));
+    }
+
+    /**
+     * @return The merge of one entry into a shard. Only the entry of the user is replaced.
+     */
+    private static HashMap<String, Object> toShardUpdate(String userId, Map<String, Object> user) {
+        HashMap<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_NAME, user.get(Constants.KEY_NAME));
+        entry.put(Constants.KEY_EMAIL, user.get(Constants.KEY_EMAIL));
+        entry.put(Constants.KEY_IMAGE_HASH, user.get(Constants.KEY_IMAGE_HASH));
+
+        HashMap<String, Object> entries = new HashMap<>();
+        entries.put(userId, entry);
+
+        HashMap<String, Object> update = new HashMap<>();
+        update.put(Constants.KEY_ENTRIES, entries);
+        update.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+        return update;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.chatandroidapp.firebase;
+
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.module.Conversation;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inbox maps the recent conversations of a user onto Firestore.
+ * Every user has an Inbox sub-collection with one entry per conversation, keyed by the other
+ * participant's ID, holding the last message, its time, the IDs of the unread messages and a summary
+ * of the other participant. The entries of both participants are written in the same batch as the messages, so the
+ * main screen renders every conversation from a single query instead of one query per conversation.
+ */
+public class Inbox {
+
+    private Inbox() {
+    }
+
+    /**
+     * @param database The Firestore instance.
+     * @param userId   The ID of the user.
+     * @return The inbox entries of the user.
+     */
+    public static CollectionReference of(FirebaseFirestore database, String userId) {
+        return database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(userId)
+                .collection(Constants.KEY_COLLECTION_INBOX);
+    }
+
+    /**
+     * @param database The Firestore instance.
+     * @param userId   The ID of the user.
+     * @param limit    The maximum number of entries.
+     * @return The most recent conversations of the user, newest first.
+     */
+    public static Query recent(FirebaseFirestore database, String userId, int limit) {
+        return of(database, userId)
+                .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .limit(limit);
+    }
+
+    /**
+     * Adds to a write batch the updates of the inbox entries of both participants of every conversation
+     * in the messages. Each entry is written once per batch, with the last of its messages.
+     * The receiver's entry records the unread messages by ID rather than incrementing a count, so a batch
+     * written again after a lost acknowledgement leaves the same entry behind.
+     *
+     * @param database The Firestore instance.
+     * @param batch    The batch writing the messages.
+     * @param messages The messages, in the order they were sent.
+     * @return The number of writes added to the batch, two per sender and receiver pair.
+     */
+    public static int update(FirebaseFirestore database, WriteBatch batch, List<ChatMessage> messages) {
+        // Last message and message IDs of each sender and receiver pair, in order of first message
+        Map<String, ChatMessage> lastMessages = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> unread = new HashMap<>();
+        for (ChatMessage message : messages) {
+            String key = message.senderId + "/" + message.receiverId;
+            lastMessages.put(key, message);
+            Map<String, Object> ids = unread.get(key);
+            if (ids == null) {
+                ids = new HashMap<>();
+                unread.put(key, ids);
+            }
+            ids.put(message.id, true);
+        }
+
+        for (Map.Entry<String, ChatMessage> entry : lastMessages.entrySet()) {
+            ChatMessage message = entry.getValue();
+
+            HashMap<String, Object> senderEntry = toEntry(message, message.receiverId,
+                    message.receiverName, message.receiverImageHash);
+            senderEntry.put(Constants.KEY_UNREAD, FieldValue.delete()); // Sending implies the conversation was read
+            batch.set(of(database, message.senderId).document(message.receiverId), senderEntry, SetOptions.merge());
+
+            HashMap<String, Object> receiverEntry = toEntry(message, message.senderId,
+                    message.senderName, message.senderImageHash);
+            // Merged into the IDs already unread
+            receiverEntry.put(Constants.KEY_UNREAD, unread.get(entry.getKey()));
+            batch.set(of(database, message.receiverId).document(message.senderId), receiverEntry, SetOptions.merge());
+        }
+        return 2 * lastMessages.size();
+    }
+
+    /**
+     * Clears the unread messages of a conversation. Does nothing if the user has no entry for it yet.
+     *
+     * @param database The Firestore instance.
+     * @param userId   The ID of the user reading the conversation.
+     * @param peerId   The ID of the other participant.
+     */
+    public static void markRead(FirebaseFirestore database, String userId, String peerId) {
+        TaskTracer.trace("inbox.markRead", of(database, userId).document(peerId)
+                .update(Constants.KEY_UNREAD, FieldValue.delete()), 1)
+                .addOnFailureListener(e -> {
+                    // No entry yet, or offline: they are cleared the next time the conversation is opened
+                });
+    }
+
+    /**
+     * @param document An inbox entry.
+     * @return The conversation, timed with the local estimate while the server has not acknowledged it.
+     */
+    public static Conversation toConversation(DocumentSnapshot document) {
+        Conversation conversation = new Conversation();
+        conversation.peerId = document.getId();
+        conversation.id = document.getString(Constants.KEY_CONVERSATION_ID);
+        conversation.peerName = document.getString(Constants.KEY_PEER_NAME);
+        conversation.peerImageHash = document.getString(Constants.KEY_PEER_IMAGE_HASH);
+        conversation.lastMessage = document.getString(Constants.KEY_LAST_MESSAGE);
+        conversation.lastSenderId = document.getString(Constants.KEY_LAST_SENDER_ID);
+        Timestamp timestamp = document.getTimestamp(Constants.KEY_TIMESTAMP,
+                DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        conversation.timestamp = timestamp != null ? timestamp.toDate().getTime() : 0;
+        Object unread = document.get(Constants.KEY_UNREAD);
+        conversation.unreadCount = unread instanceof Map ? ((Map<?, ?>) unread).size() : 0;
+        return conversation;
+    }
+
+    private static HashMap<String, Object> toEntry(ChatMessage message, String peerId, String peerName,
+                                                   String peerImageHash) {
+        HashMap<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_CONVERSATION_ID, message.conversationId);
+        entry.put(Constants.KEY_PEER_ID, peerId);
+        // Merged, so a message queued without a summary keeps the one already stored
+        if (peerName != null) {
+            entry.put(Constants.KEY_PEER_NAME, peerName);
+        }
+        if (peerImageHash != null) {
+            entry.put(Constants.KEY_PEER_IMAGE_HASH, peerImageHash);
+        }
+        entry.put(Constants.KEY_LAST_MESSAGE, message.text);
+        entry.put(Constants.KEY_LAST_SENDER_ID, message.senderId);
+        entry.put(Constants.KEY_TIMESTAMP, FieldValue.serverTimestamp());
+        return entry;
+    }
+}
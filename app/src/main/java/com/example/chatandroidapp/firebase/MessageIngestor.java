@@ -0,0 +1,183 @@
+package com.example.chatandroidapp.firebase;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.MessageNotifier;
+import com.example.chatandroidapp.utilities.NotificationCoalescer;
+import com.example.chatandroidapp.utilities.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MessageIngestor notifies the user about the messages delivered by push.
+ * Payloads are queued as they arrive and parsed on the disk executor, everything queued while a
+ * flush is pending at once. Nothing is stored: the conversations are read from Firestore, whose cache
+ * serves them offline. Only the IDs of the latest messages are remembered, so that a push delivered
+ * twice is notified once. The new messages are then handed to a {@link NotificationCoalescer},
+ * which bounds how often notifications are posted.
+ * Only the messages addressed to the signed-in user are notified: a push that reaches the device after a
+ * sign-out, or that was sent to the token of a previous user, is dropped.
+ */
+public class MessageIngestor {
+
+    private static MessageIngestor instance;
+
+    private final PreferenceManager preferenceManager;
+    private final MessageNotifier messageNotifier;
+    private final NotificationCoalescer coalescer;
+    private final ConcurrentLinkedQueue<Map<String, String>> incoming = new ConcurrentLinkedQueue<>(); // Payloads not parsed yet
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(); // True while a flush is queued on the disk executor
+    // Latest message IDs, oldest first; only used on the disk executor
+    private final Map<String, Boolean> recentIds = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > Constants.RECENT_MESSAGE_IDS;
+        }
+    };
+
+    /**
+     * Returns the application-wide MessageIngestor.
+     *
+     * @param context Any context, only its application context is retained.
+     * @return The shared MessageIngestor instance.
+     */
+    public static synchronized MessageIngestor getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageIngestor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MessageIngestor(Context context) {
+        preferenceManager = new PreferenceManager(context);
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "MessageNotifier"));
+        messageNotifier = new MessageNotifier(context);
+        coalescer = new NotificationCoalescer(messageNotifier, new NotificationCoalescer.Scheduler() {
+            @Override
+            public long now() {
+                return SystemClock.elapsedRealtime();
+            }
+
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }, Constants.NOTIFICATIONS_PER_SECOND, Constants.NOTIFICATION_MAX_LINES);
+    }
+
+    /**
+     * Queues the data payload of a push, or drops it if no user is signed in. Returns immediately.
+     *
+     * @param data The data payload of the push.
+     */
+    public void enqueue(Map<String, String> data) {
+        if (currentUserId() == null) {
+            return;
+        }
+        incoming.add(data);
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            AppExecutors.diskIO().execute(this::flush);
+        }
+    }
+
+    /**
+     * Removes the notification of a conversation and resets its count, typically because the user opened it.
+     *
+     * @param conversationId The conversation to forget.
+     */
+    public void clear(String conversationId) {
+        coalescer.clear(conversationId);
+        messageNotifier.cancel(conversationId);
+    }
+
+    /**
+     * Drops the payloads not handled yet and removes every message notification, because the user signed out.
+     * Runs on the disk executor after any flush in progress, so that none of its messages is notified later.
+     * Must be called once the session is cleared from the preferences.
+     */
+    public void clearAll() {
+        AppExecutors.diskIO().execute(() -> {
+            incoming.clear();
+            recentIds.clear();
+            coalescer.clearAll();
+            messageNotifier.cancelAll();
+        });
+    }
+
+    /**
+     * @return The ID of the signed-in user, or null if no user is signed in.
+     */
+    private String currentUserId() {
+        return preferenceManager.getBoolean(Constants.KEY_IS_SIGNED_IN)
+                ? preferenceManager.getString(Constants.KEY_USER_ID) : null;
+    }
+
+    /**
+     * Parses every queued payload and notifies the messages addressed to the signed-in user
+     * that were not notified yet.
+     */
+    private void flush() {
+        // Reset first, so that a payload queued during the flush schedules the next one
+        isFlushScheduled.set(false);
+
+        List<ChatMessage> messages = new ArrayList<>();
+        Map<String, String> data;
+        while ((data = incoming.poll()) != null) {
+            ChatMessage message = parse(data);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        // The user may have signed out, or another one signed in, since the payloads were queued
+        String userId = currentUserId();
+        Iterator<ChatMessage> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            ChatMessage message = iterator.next();
+            // A push delivered twice is only notified once
+            if (userId == null || !userId.equals(message.receiverId) || recentIds.put(message.id, true) != null) {
+                iterator.remove();
+            }
+        }
+        if (!messages.isEmpty()) {
+            coalescer.add(messages);
+        }
+    }
+
+    /**
+     * @param data The data payload of a push.
+     * @return The message it carries, or null if it is not a message.
+     */
+    static ChatMessage parse(Map<String, String> data) {
+        ChatMessage message = new ChatMessage();
+        message.id = data.get(Constants.KEY_MESSAGE_ID);
+        message.conversationId = data.get(Constants.KEY_CONVERSATION_ID);
+        message.senderId = data.get(Constants.KEY_SENDER_ID);
+        message.senderName = data.get(Constants.KEY_SENDER_NAME);
+        message.receiverId = data.get(Constants.KEY_RECEIVER_ID);
+        message.text = data.get(Constants.KEY_MESSAGE);
+        if (message.id == null || message.conversationId == null || message.text == null) {
+            return null;
+        }
+        try {
+            message.timestamp = Long.parseLong(data.get(Constants.KEY_TIMESTAMP));
+        } catch (NumberFormatException e) {
+            message.timestamp = System.currentTimeMillis();
+        }
+        return message;
+    }
+}
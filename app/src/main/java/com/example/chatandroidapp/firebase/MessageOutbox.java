@@ -0,0 +1,194 @@
+package com.example.chatandroidapp.firebase;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.chatandroidapp.database.OutboxStore;
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.OutboxDrainer;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageOutbox sends chat messages through a durable local queue.
+ * A message is first stored in the {@link OutboxStore}, so it survives process death and can be
+ * shown right away, then a WorkManager job delivers the queue in order, in write batches of up to
+ * {@link Constants#OUTBOX_BATCH_SIZE} messages along with the {@link Inbox} entries they update,
+ * whenever the network is available.
+ * Every message is written under its client-generated ID, so a batch written again after a lost
+ * acknowledgement overwrites the same documents instead of duplicating them.
+ * A batch the server refuses for good is marked failed and kept for display, and the queue goes on without it.
+ */
+public class MessageOutbox {
+
+    private static final String WORK_NAME = "outboxDrain"; // Unique work: drains are chained, never concurrent
+    private static final long BACKOFF_SECONDS = 30; // First retry delay, doubled on each retry
+
+    private static volatile MessageOutbox instance;
+
+    private final Context context;
+    private final OutboxStore outboxStore;
+
+    private MessageOutbox(Context context) {
+        this.context = context;
+        outboxStore = new OutboxStore(context);
+    }
+
+    /**
+     * @param context Any context, only its application context is retained.
+     * @return The single instance of MessageOutbox.
+     */
+    public static MessageOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessageOutbox.class) {
+                if (instance == null) {
+                    instance = new MessageOutbox(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a message and schedules its delivery. Returns immediately, the queue is written on disk I/O.
+     *
+     * @param message A message created by {@link Conversations#newMessage(String, String, String, User, String)}.
+     */
+    public void send(ChatMessage message) {
+        AppExecutors.diskIO().execute(() -> {
+            outboxStore.enqueue(message);
+            scheduleDrain();
+        });
+    }
+
+    /**
+     * Schedules a drain if messages were left queued, for example by a process that died before scheduling it.
+     */
+    public void resume() {
+        AppExecutors.diskIO().execute(() -> {
+            if (!outboxStore.isEmpty()) {
+                scheduleDrain();
+            }
+        });
+    }
+
+    /**
+     * Reads the messages of a conversation still waiting for delivery, or that failed to be delivered.
+     * Does disk I/O.
+     *
+     * @param conversationId The ID of the conversation.
+     * @return The pending and failed messages, in the order they were sent.
+     */
+    public List<ChatMessage> getPending(String conversationId) {
+        return outboxStore.getPending(conversationId);
+    }
+
+    /**
+     * Drops the queued messages and any scheduled drain, so that nothing is sent in the name of a user
+     * after they sign out. Returns immediately, the queue is cleared on disk I/O after earlier sends.
+     */
+    public void clear() {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+        AppExecutors.diskIO().execute(outboxStore::clear);
+    }
+
+    private void scheduleDrain() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(DrainWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // Appended after a running drain, which may have read the queue before this message was added
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * DrainWorker delivers the whole outbox, one write batch at a time.
+     */
+    public static class DrainWorker extends Worker {
+
+        /**
+         * Constructor for DrainWorker, called by WorkManager.
+         *
+         * @param context      The application context.
+         * @param workerParams The parameters of the work.
+         */
+        public DrainWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+            super(context, workerParams);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            OutboxStore outboxStore = new OutboxStore(getApplicationContext());
+            FirebaseFirestore database = FirebaseFirestore.getInstance();
+
+            OutboxDrainer.Queue<ChatMessage> queue = new OutboxDrainer.Queue<ChatMessage>() {
+                @Override
+                public List<ChatMessage> peek(int limit) {
+                    return outboxStore.peek(limit);
+                }
+
+                @Override
+                public void remove(List<ChatMessage> messages) {
+                    outboxStore.remove(messages);
+                }
+
+                @Override
+                public void reject(List<ChatMessage> messages) {
+                    outboxStore.markFailed(messages);
+                }
+            };
+            OutboxDrainer.Sink<ChatMessage> sink = messages -> {
+                WriteBatch batch = database.batch();
+                for (ChatMessage message : messages) {
+                    batch.set(Conversations.messages(database, message.conversationId).document(message.id),
+                            Conversations.toDocument(message));
+                }
+                // The inbox entries of both participants are written once per pair, however many messages
+                int inboxWrites = Inbox.update(database, batch, messages);
+                // No timeout: a committed batch stays queued in Firestore until acknowledged, so giving up on it
+                // would only write it a second time. The network constraint and WorkManager bound the wait.
+                try {
+                    Tasks.await(TaskTracer.trace("outbox.commit", batch.commit(), messages.size() + inboxWrites));
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof FirebaseFirestoreException && ((FirebaseFirestoreException) e.getCause())
+                            .getCode() == FirebaseFirestoreException.Code.PERMISSION_DENIED) {
+                        throw new OutboxDrainer.RejectedException(e.getCause()); // Writing it again cannot succeed
+                    }
+                    throw e;
+                }
+            };
+
+            try {
+                OutboxDrainer.drain(queue, sink, Constants.OUTBOX_BATCH_SIZE);
+                return Result.success();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            } catch (Exception e) {
+                return Result.retry(); // The commit failed for now, or the queue could not be read
+            }
+        }
+    }
+}
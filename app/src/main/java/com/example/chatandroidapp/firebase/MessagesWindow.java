@@ -0,0 +1,232 @@
+package com.example.chatandroidapp.firebase;
+
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MessagesWindow keeps a bounded, contiguous slice of a conversation in memory.
+ * Older messages are read in pages with cursors as the user scrolls up, and newer ones as the user
+ * scrolls back down; once the window grows past its maximum size, pages at the far end are dropped.
+ * Only the newest page is listened to, and only while the window reaches it, so the cost of opening
+ * a conversation does not depend on its length.
+ * All methods must be called from the main thread, where the listener is notified too.
+ */
+public class MessagesWindow {
+
+    /**
+     * Notified when the messages in the window change.
+     */
+    public interface Listener {
+        /**
+         * @param messages   The messages in the window, oldest first.
+         * @param isAtLatest True if the window reaches the newest message of the conversation.
+         */
+        void onMessagesChanged(List<ChatMessage> messages, boolean isAtLatest);
+
+        /**
+         * @param exception The error that stopped a read.
+         */
+        void onMessagesError(Exception exception);
+    }
+
+    private final CollectionReference messages;
+    private final int pageSize;
+    private final int maxSize;
+    private final Listener listener;
+
+    private final List<DocumentSnapshot> window = new ArrayList<>(); // Newest first
+    private ListenerRegistration latestRegistration; // Listens to the newest page while the window reaches it
+    private boolean hasOlder = true; // False once the oldest message of the conversation is in the window
+    private boolean isLoading; // True while a page is being read
+    private int generation; // Incremented whenever the window is reset, so that pages read before are ignored
+
+    /**
+     * Constructor for MessagesWindow.
+     *
+     * @param messages The messages collection of the conversation.
+     * @param pageSize The number of messages read per page.
+     * @param maxSize  The maximum number of messages kept in the window.
+     * @param listener Notified when the messages in the window change.
+     */
+    public MessagesWindow(CollectionReference messages, int pageSize, int maxSize, Listener listener) {
+        this.messages = messages;
+        this.pageSize = pageSize;
+        this.maxSize = maxSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Shows the newest page and starts listening to it.
+     */
+    public void start() {
+        listenToLatest();
+    }
+
+    /**
+     * Stops listening. Pages still being read are ignored when they arrive.
+     */
+    public void stop() {
+        generation++;
+        stopListening();
+    }
+
+    /**
+     * Brings the window back to the newest messages, for example after sending one.
+     */
+    public void jumpToLatest() {
+        if (latestRegistration != null) {
+            return;
+        }
+        generation++;
+        isLoading = false;
+        window.clear();
+        hasOlder = true;
+        listenToLatest();
+    }
+
+    /**
+     * Reads the page before the oldest message in the window, dropping the newest ones beyond the maximum size.
+     */
+    public void loadOlder() {
+        if (isLoading || !hasOlder || window.isEmpty()) {
+            return;
+        }
+        isLoading = true;
+        int requested = generation;
+        TaskTracer.trace("messages.loadOlder", newestFirst().startAfter(window.get(window.size() - 1)).limit(pageSize).get())
+                .addOnCompleteListener(task -> {
+                    if (requested != generation) {
+                        return;
+                    }
+                    isLoading = false;
+                    if (!task.isSuccessful()) {
+                        listener.onMessagesError(task.getException());
+                        return;
+                    }
+
+                    List<DocumentSnapshot> page = task.getResult().getDocuments();
+                    window.addAll(page);
+                    hasOlder = page.size() == pageSize;
+                    if (window.size() > maxSize) {
+                        // The newest messages leave the window, so the newest page no longer needs a listener
+                        window.subList(0, window.size() - maxSize).clear();
+                        stopListening();
+                    }
+                    publish();
+                });
+    }
+
+    /**
+     * Reads the page after the newest message in the window, dropping the oldest ones beyond the maximum size.
+     * When the page reaches the newest message of the conversation, the window listens to it again.
+     */
+    public void loadNewer() {
+        if (isLoading || latestRegistration != null || window.isEmpty()) {
+            return;
+        }
+        isLoading = true;
+        int requested = generation;
+        TaskTracer.trace("messages.loadNewer", newestFirst().endBefore(window.get(0)).limitToLast(pageSize).get())
+                .addOnCompleteListener(task -> {
+                    if (requested != generation) {
+                        return;
+                    }
+                    isLoading = false;
+                    if (!task.isSuccessful()) {
+                        listener.onMessagesError(task.getException());
+                        return;
+                    }
+
+                    List<DocumentSnapshot> page = task.getResult().getDocuments();
+                    window.addAll(0, page);
+                    trimOldest();
+                    if (page.size() < pageSize) {
+                        listenToLatest(); // Its first snapshot publishes the window
+                    } else {
+                        publish();
+                    }
+                });
+    }
+
+    /**
+     * @return The messages of the conversation, newest first, with the document ID breaking timestamp ties.
+     */
+    private Query newestFirst() {
+        return messages.orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+    }
+
+    private void listenToLatest() {
+        latestRegistration = newestFirst().limit(pageSize).addSnapshotListener((snapshot, exception) -> {
+            if (exception != null) {
+                listener.onMessagesError(exception);
+                return;
+            }
+            if (snapshot != null) {
+                TaskTracer.traceSnapshot("messages.listen", snapshot);
+                mergeLatest(snapshot.getDocuments());
+            }
+        });
+    }
+
+    private void stopListening() {
+        if (latestRegistration != null) {
+            latestRegistration.remove();
+            latestRegistration = null;
+        }
+    }
+
+    /**
+     * Replaces the newest part of the window with the newest page, keeping the older messages it overlaps.
+     *
+     * @param latest The newest page, newest first.
+     */
+    private void mergeLatest(List<DocumentSnapshot> latest) {
+        int overlap = latest.isEmpty() ? -1 : indexOf(latest.get(latest.size() - 1).getId());
+        List<DocumentSnapshot> older = overlap >= 0
+                ? new ArrayList<>(window.subList(overlap + 1, window.size()))
+                : new ArrayList<>();
+        if (overlap < 0) {
+            // First page, or more new messages than a page arrived at once: restart from the newest page
+            hasOlder = latest.size() == pageSize;
+        }
+        window.clear();
+        window.addAll(latest);
+        window.addAll(older);
+        trimOldest();
+        publish();
+    }
+
+    private void trimOldest() {
+        if (window.size() > maxSize) {
+            window.subList(maxSize, window.size()).clear();
+            hasOlder = true;
+        }
+    }
+
+    private int indexOf(String documentId) {
+        for (int i = 0; i < window.size(); i++) {
+            if (window.get(i).getId().equals(documentId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void publish() {
+        List<ChatMessage> chronological = new ArrayList<>(window.size());
+        for (int i = window.size() - 1; i >= 0; i--) {
+            chronological.add(Conversations.toMessage(window.get(i)));
+        }
+        listener.onMessagesChanged(chronological, latestRegistration != null);
+    }
+}
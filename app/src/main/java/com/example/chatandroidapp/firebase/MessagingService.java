@@ -1,7 +1,5 @@
 package com.example.chatandroidapp.firebase;
 
-import android.util.Log;
-
 import androidx.annotation.NonNull;
 
 import com.google.firebase.messaging.FirebaseMessagingService;
@@ -22,10 +20,8 @@ public class MessagingService extends FirebaseMessagingService {
     @Override
     public void onNewToken(@NonNull String token) {
         super.onNewToken(token);
-        // Log the new FCM token
-        Log.d("FCM", "Token: " + token);
-
-        //Send the token to your server to keep it updated
+        // Send the token to the signed-in user's document, retried in the background until it lands
+        TokenSync.sync(getApplicationContext(), token);
     }
 
     /**
@@ -36,11 +32,9 @@ public class MessagingService extends FirebaseMessagingService {
     @Override
     public void onMessageReceived(@NonNull RemoteMessage message) {
         super.onMessageReceived(message);
-        // Log the received message's body if it contains a notification
-        if (message.getNotification() != null) {
-            Log.d("FCM", "460 Message: " + message.getNotification().getBody());
+        // Data messages are parsed and notified in the background
+        if (!message.getData().isEmpty()) {
+            MessageIngestor.getInstance(getApplicationContext()).enqueue(message.getData());
         }
-
-        // Handle the message and display a notification or update the UI as needed
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.example.chatandroidapp.firebase;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.PreferenceManager;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * TokenSync writes the FCM token of the device to the signed-in user's document, only when it changed.
+ * The last token the server acknowledged is kept in the preferences, so an app start with an unchanged
+ * token costs no write. A changed token is written by a WorkManager job, which survives process death
+ * and retries with exponential backoff while the network is unavailable.
+ */
+public class TokenSync {
+
+    private static final String WORK_NAME = "tokenSync"; // Unique work: a newer token replaces a pending one
+    private static final String INPUT_USER_ID = "userId";
+    private static final String INPUT_TOKEN = "token";
+    private static final long BACKOFF_SECONDS = 30; // First retry delay, doubled on each retry
+    private static final long WRITE_TIMEOUT_SECONDS = 30; // Upper bound of one write attempt
+
+    private TokenSync() {
+    }
+
+    /**
+     * Schedules the write of a token, unless the server already has it or no user is signed in.
+     *
+     * @param context Any context.
+     * @param token   The current FCM token of the device.
+     */
+    public static void sync(Context context, String token) {
+        PreferenceManager preferenceManager = new PreferenceManager(context.getApplicationContext());
+        String userId = preferenceManager.getString(Constants.KEY_USER_ID);
+        if (!preferenceManager.getBoolean(Constants.KEY_IS_SIGNED_IN) || userId == null
+                || token.equals(preferenceManager.getString(Constants.KEY_FCM_TOKEN_SYNCED))) {
+            return;
+        }
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setInputData(new Data.Builder()
+                        .putString(INPUT_USER_ID, userId)
+                        .putString(INPUT_TOKEN, token)
+                        .build())
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    /**
+     * Drops any pending write, so that a signed-out user's document is not written to anymore.
+     *
+     * @param context Any context.
+     */
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME);
+    }
+
+    /**
+     * SyncWorker performs one write of a token and records it as acknowledged.
+     */
+    public static class SyncWorker extends Worker {
+
+        /**
+         * Constructor for SyncWorker, called by WorkManager.
+         *
+         * @param context      The application context.
+         * @param workerParams The parameters of the work.
+         */
+        public SyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+            super(context, workerParams);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            String userId = getInputData().getString(INPUT_USER_ID);
+            String token = getInputData().getString(INPUT_TOKEN);
+            PreferenceManager preferenceManager = new PreferenceManager(getApplicationContext());
+            if (userId == null || token == null || !userId.equals(preferenceManager.getString(Constants.KEY_USER_ID))) {
+                return Result.success(); // The user signed out since the work was scheduled
+            }
+
+            try {
+                Tasks.await(TaskTracer.trace("token.update", FirebaseFirestore.getInstance()
+                        .collection(Constants.KEY_COLLECTION_USERS)
+                        .document(userId)
+                        .update(Constants.KEY_FCM_TOKEN, token,
+                                Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp()), 1),
+                        WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof FirebaseFirestoreException && ((FirebaseFirestoreException) e.getCause())
+                        .getCode() == FirebaseFirestoreException.Code.NOT_FOUND) {
+                    return Result.failure(); // The account is gone, retrying cannot succeed
+                }
+                return Result.retry();
+            } catch (TimeoutException e) {
+                return Result.retry();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+
+            if (userId.equals(preferenceManager.getString(Constants.KEY_USER_ID))) {
+                preferenceManager.putString(Constants.KEY_FCM_TOKEN_SYNCED, token);
+            }
+            return Result.success();
+        }
+    }
+}
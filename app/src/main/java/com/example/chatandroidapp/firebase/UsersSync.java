@@ -0,0 +1,258 @@
+package com.example.chatandroidapp.firebase;
+
+import android.util.Base64;
+
+import com.example.chatandroidapp.database.UserStore;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AppExecutors;
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.TaskTracer;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * UsersSync brings the local user directory of {@link UserStore} up to date with the Users collection.
+ * Only the documents whose {@code updatedAt} is at or past the newest one already stored are read:
+ * first in pages until the store has caught up, then through a snapshot listener that applies
+ * the changes as they happen. An empty store is first filled from the shards of {@link Directory}.
+ * Results are written to the store on the disk thread.
+ */
+public class UsersSync {
+
+    /**
+     * Notified on the main thread when the local directory changed.
+     */
+    public interface Listener {
+        /**
+         * @param isCaughtUp true once every document updated before the sync started has been stored.
+         */
+        void onUsersSynced(boolean isCaughtUp);
+
+        /**
+         * @param exception The reason the sync stopped.
+         */
+        void onSyncError(Exception exception);
+    }
+
+    private final FirebaseFirestore database;
+    private final UserStore userStore;
+    private final Listener listener;
+    private final int batchSize; // Number of documents read per catch-up page
+
+    private ListenerRegistration registration;
+    private boolean isStopped;
+
+    /**
+     * Constructor for UsersSync.
+     *
+     * @param database  The Firestore instance to read from.
+     * @param userStore The local store to write to.
+     * @param batchSize The number of documents read per catch-up page.
+     * @param listener  The listener notified of the changes.
+     */
+    public UsersSync(FirebaseFirestore database, UserStore userStore, int batchSize, Listener listener) {
+        this.database = database;
+        this.userStore = userStore;
+        this.batchSize = batchSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts syncing from the watermark of the local store. Must be called from the main thread.
+     */
+    public void start() {
+        isStopped = false;
+        AppExecutors.diskIO().execute(() -> {
+            long watermark = userStore.getWatermark();
+            AppExecutors.mainThread().execute(() -> {
+                if (watermark == 0) {
+                    loadDirectory();
+                } else {
+                    catchUp(watermark, null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Stops listening for changes. Must be called from the main thread.
+     */
+    public void stop() {
+        isStopped = true;
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    /**
+     * Fills an empty local directory from the shards of {@link Directory}, one read per shard instead of
+     * one per user, then catches up from the newest shard. Entries are written in the same transaction as
+     * every change to their name, email or avatar, so a user updated before that shard was written is
+     * already up to date in its own shard. Accounts not signed in to since the directory exists are missing
+     * from it until backfilled; without any shard, every user is read from the Users collection as before.
+     */
+    private void loadDirectory() {
+        if (isStopped) {
+            return;
+        }
+        TaskTracer.trace("directory.load", Directory.shards(database).get()).addOnCompleteListener(AppExecutors.diskIO(), task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                AppExecutors.mainThread().execute(() -> listener.onSyncError(task.getException()));
+                return;
+            }
+
+            List<User> users = new ArrayList<>();
+            List<Long> updatedAt = new ArrayList<>();
+            for (DocumentSnapshot shard : task.getResult().getDocuments()) {
+                Timestamp timestamp = shard.getTimestamp(Constants.KEY_UPDATED_AT);
+                if (timestamp == null) {
+                    continue; // Pending server timestamp of a local write
+                }
+                for (User user : Directory.toUsers(shard)) {
+                    users.add(user);
+                    updatedAt.add(timestamp.toDate().getTime());
+                }
+            }
+            userStore.upsert(users, updatedAt);
+            long watermark = userStore.getWatermark();
+
+            AppExecutors.mainThread().execute(() -> {
+                if (!users.isEmpty()) {
+                    listener.onUsersSynced(false);
+                }
+                catchUp(watermark, null);
+            });
+        });
+    }
+
+    /**
+     * Reads one page of the documents updated since the watermark, then the next one until a short page.
+     *
+     * @param watermark The update time, in milliseconds, from which documents are read.
+     * @param cursor    The last document of the previous page, or null for the first page.
+     */
+    private void catchUp(long watermark, DocumentSnapshot cursor) {
+        if (isStopped) {
+            return;
+        }
+        Query query = changedSince(watermark).limit(batchSize);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+
+        TaskTracer.trace("users.catchUp", query.get()).addOnCompleteListener(AppExecutors.diskIO(), task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                AppExecutors.mainThread().execute(() -> listener.onSyncError(task.getException()));
+                return;
+            }
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            store(documents);
+            boolean isCaughtUp = documents.size() < batchSize;
+            long newWatermark = userStore.getWatermark();
+
+            AppExecutors.mainThread().execute(() -> {
+                listener.onUsersSynced(isCaughtUp);
+                if (isCaughtUp) {
+                    listen(newWatermark);
+                } else {
+                    catchUp(watermark, documents.get(documents.size() - 1));
+                }
+            });
+        });
+    }
+
+    /**
+     * Applies the changes made after the catch-up as they happen.
+     *
+     * @param watermark The update time, in milliseconds, from which changes are watched.
+     */
+    private void listen(long watermark) {
+        if (isStopped) {
+            return;
+        }
+        registration = changedSince(watermark).addSnapshotListener(AppExecutors.diskIO(), (snapshot, exception) -> {
+            if (exception != null || snapshot == null) {
+                if (exception != null) {
+                    AppExecutors.mainThread().execute(() -> listener.onSyncError(exception));
+                }
+                return;
+            }
+            TaskTracer.traceSnapshot("users.listen", snapshot);
+
+            List<DocumentSnapshot> documents = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                // Users are never deleted, a removal only means the document left the query
+                if (change.getType() != DocumentChange.Type.REMOVED) {
+                    documents.add(change.getDocument());
+                }
+            }
+            if (!documents.isEmpty()) {
+                store(documents);
+                AppExecutors.mainThread().execute(() -> listener.onUsersSynced(true));
+            }
+        });
+    }
+
+    /**
+     * @param watermark The update time in milliseconds.
+     * @return The users updated at or after the watermark, oldest first.
+     */
+    private Query changedSince(long watermark) {
+        // At or after: the stored watermark is truncated to milliseconds, re-reading a document is harmless
+        return database.collection(Constants.KEY_COLLECTION_USERS)
+                .whereGreaterThanOrEqualTo(Constants.KEY_UPDATED_AT, new Timestamp(new Date(watermark)))
+                .orderBy(Constants.KEY_UPDATED_AT)
+                .orderBy(FieldPath.documentId());
+    }
+
+    /**
+     * Writes documents of the Users collection to the local store. Runs on the disk thread.
+     *
+     * @param documents The documents to write.
+     */
+    private void store(List<DocumentSnapshot> documents) {
+        List<User> users = new ArrayList<>(documents.size());
+        List<Long> updatedAt = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            Timestamp timestamp = document.getTimestamp(Constants.KEY_UPDATED_AT);
+            if (timestamp == null) {
+                continue; // Pending server timestamp of a local write
+            }
+            users.add(toUser(document));
+            updatedAt.add(timestamp.toDate().getTime());
+        }
+        userStore.upsert(users, updatedAt);
+    }
+
+    /**
+     * Maps a document of the Users collection to a User.
+     *
+     * @param document The document to map.
+     * @return The corresponding User.
+     */
+    public static User toUser(DocumentSnapshot document) {
+        User user = new User();
+        user.name = document.getString(Constants.KEY_NAME);
+        user.email = document.getString(Constants.KEY_EMAIL);
+        user.image = document.getString(Constants.KEY_IMAGE); // Only set on documents created before the Avatars collection
+        user.imageHash = document.getString(Constants.KEY_IMAGE_HASH);
+        if (user.imageHash == null && user.image != null && !user.image.isEmpty()) {
+            // Key the inline image by the hash it will get once migrated, so that both hit the same cache entry
+            user.imageHash = AvatarStore.hashOf(Base64.decode(user.image, Base64.DEFAULT));
+        }
+        user.token = document.getString(Constants.KEY_FCM_TOKEN);
+        user.id = document.getId();
+        return user;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.chatandroidapp.module;
+
+import java.io.Serializable;
+
+public class ChatMessage implements Serializable {
+    public String id, conversationId, senderId, senderName, receiverId, text;
+    public String senderImageHash, receiverName, receiverImageHash; // Peer summaries of the inbox entries
+    public long timestamp;
+    public boolean isPending;
+    public boolean isFailed; // Refused by the server, never delivered
+}
@@ -0,0 +1,9 @@
+package com.example.chatandroidapp.module;
+
+import java.io.Serializable;
+
+public class Conversation implements Serializable {
+    public String id, peerId, peerName, peerImageHash, lastMessage, lastSenderId;
+    public long timestamp;
+    public int unreadCount;
+}
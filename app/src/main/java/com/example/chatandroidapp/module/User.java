@@ -3,5 +3,5 @@ package com.example.chatandroidapp.module;
 import java.io.Serializable;
 
 public class User implements Serializable {
-    public String name, image, email, token, id;
+    public String name, image, imageHash, email, token, id;
 }
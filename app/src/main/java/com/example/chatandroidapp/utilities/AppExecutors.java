@@ -0,0 +1,52 @@
+package com.example.chatandroidapp.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AppExecutors holds the executors shared across the application, so that disk work
+ * never runs on the main thread and results can be posted back to it.
+ * Writes are serialized on {@link #diskIO()}, while reads that the screen waits on run on {@link #diskRead()},
+ * beside them: the database is in write-ahead logging mode, so they do not queue behind a long write.
+ */
+public class AppExecutors {
+
+    // Single thread: database and file writes are serialized
+    private static final ExecutorService DISK_IO = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "diskIO"));
+
+    // A few threads: reads do not block each other, and each holds its own database connection
+    private static final ExecutorService DISK_READ = Executors.newFixedThreadPool(2,
+            runnable -> new Thread(runnable, "diskRead"));
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN_THREAD = MAIN_HANDLER::post;
+
+    private AppExecutors() {
+    }
+
+    /**
+     * @return The executor for database and file writes, and for the work that must be ordered with them.
+     */
+    public static ExecutorService diskIO() {
+        return DISK_IO;
+    }
+
+    /**
+     * @return The executor for database and file reads that the UI waits on. Must not be used for writes.
+     */
+    public static ExecutorService diskRead() {
+        return DISK_READ;
+    }
+
+    /**
+     * @return The executor posting to the main thread.
+     */
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.chatandroidapp.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AvatarCache is a two-tier cache for user profile images.
+ * Decoded Bitmaps are kept in a memory LRU bounded in bytes, and the raw image bytes are kept
+ * in a bounded disk directory, so that an avatar is fetched or decoded from Base64 at most once per content.
+ * Decoding itself is left to {@link AvatarLoader}, which runs it off the main thread.
+ * Entries are keyed by user ID plus the content hash of the image computed by
+ * {@link com.example.chatandroidapp.firebase.AvatarStore#hashOf(byte[])}, so a changed avatar never hits a stale entry.
+ */
+public class AvatarCache {
+
+    private static final String TAG = "AvatarCache";
+    private static final String DISK_DIRECTORY = "avatars"; // Sub-directory of the cache directory
+    private static final long MAX_DISK_BYTES = 10L * 1024 * 1024; // Upper bound of the disk tier
+
+    private static AvatarCache instance;
+
+    /**
+     * Notified when a Bitmap leaves the memory tier because of its size bound.
+     */
+    public interface EvictionListener {
+        /**
+         * @param key    The key of the evicted entry.
+         * @param bitmap The evicted Bitmap.
+         */
+        void onEvicted(String key, Bitmap bitmap);
+    }
+
+    private final LruCache<String, Bitmap> memoryCache; // Decoded Bitmaps, sized by byte count
+    private final File diskDirectory; // Raw image bytes, one file per key
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile EvictionListener evictionListener;
+
+    /**
+     * Returns the application-wide AvatarCache.
+     *
+     * @param context Any context, only its application context is retained.
+     * @return The shared AvatarCache instance.
+     */
+    public static synchronized AvatarCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new AvatarCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AvatarCache(Context context) {
+        // Use an eighth of the available heap for decoded avatars
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) {
+                    evictions.incrementAndGet();
+                    EvictionListener listener = evictionListener;
+                    if (listener != null) {
+                        listener.onEvicted(key, oldValue);
+                    }
+                }
+            }
+        };
+        diskDirectory = new File(context.getCacheDir(), DISK_DIRECTORY);
+    }
+
+    /**
+     * Builds the cache key of an avatar.
+     *
+     * @param userId    The ID of the user owning the avatar.
+     * @param imageHash The content hash of the avatar.
+     * @return A key that changes whenever the image content changes.
+     */
+    public static String keyOf(String userId, String imageHash) {
+        return userId + "_" + imageHash;
+    }
+
+    /**
+     * Returns a decoded avatar if it is held in memory. Safe to call from the main thread.
+     *
+     * @param key The cache key, see {@link #keyOf(String, String)}.
+     * @return The decoded avatar, or null if it is not in memory.
+     */
+    public Bitmap getFromMemory(String key) {
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            memoryHits.incrementAndGet();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Keeps a decoded avatar in memory.
+     *
+     * @param key    The cache key.
+     * @param bitmap The decoded avatar.
+     */
+    public void putInMemory(String key, Bitmap bitmap) {
+        memoryCache.put(key, bitmap);
+    }
+
+    /**
+     * Returns the raw image bytes of an avatar if they are on disk.
+     * Does disk I/O, so it must be called from a background thread.
+     *
+     * @param key The cache key.
+     * @return The raw image bytes, or null if they are not on disk.
+     */
+    public byte[] getFromDisk(String key) {
+        byte[] bytes = readFromDisk(key);
+        if (bytes != null) {
+            diskHits.incrementAndGet();
+        }
+        return bytes;
+    }
+
+    /**
+     * Counts a lookup that found the avatar in no local tier and went to its source.
+     */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Keeps the raw image bytes of an avatar on disk. The write happens on disk I/O.
+     *
+     * @param key   The cache key.
+     * @param bytes The raw image bytes.
+     */
+    public void putOnDisk(String key, byte[] bytes) {
+        writeToDisk(key, bytes);
+    }
+
+    /**
+     * Registers the listener notified when a Bitmap is evicted from memory.
+     *
+     * @param evictionListener The listener, or null to remove it.
+     */
+    public void setEvictionListener(EvictionListener evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * @return The number of lookups served from memory.
+     */
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    /**
+     * @return The number of lookups served from disk.
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return The number of lookups that found neither a Bitmap nor bytes and went to the image source,
+     * as counted by {@link #recordMiss()}.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of Bitmaps evicted from memory to respect the size bound.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Logs the current counters, useful when profiling list scrolling.
+     */
+    public void logStats() {
+        Log.d(TAG, "memoryHits=" + memoryHits.get()
+                + " diskHits=" + diskHits.get()
+                + " misses=" + misses.get()
+                + " evictions=" + evictions.get()
+                + " memoryBytes=" + memoryCache.size() + "/" + memoryCache.maxSize());
+    }
+
+    /**
+     * Reads the raw bytes of an avatar from the disk tier.
+     *
+     * @param key The cache key.
+     * @return The bytes, or null if they are not on disk.
+     */
+    private byte[] readFromDisk(String key) {
+        File file = new File(diskDirectory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+            // Mark the entry as recently used for the disk trim
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the raw bytes of an avatar to the disk tier on disk I/O, then trims the tier.
+     *
+     * @param key   The cache key.
+     * @param bytes The raw image bytes.
+     */
+    private void writeToDisk(String key, byte[] bytes) {
+        AppExecutors.diskIO().execute(() -> {
+            if (!diskDirectory.isDirectory() && !diskDirectory.mkdirs()) {
+                return;
+            }
+            File file = new File(diskDirectory, key);
+            File temporary = new File(diskDirectory, key + ".tmp");
+            try (FileOutputStream outputStream = new FileOutputStream(temporary)) {
+                outputStream.write(bytes);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write " + key, e);
+                temporary.delete();
+                return;
+            }
+            // Rename so that a reader never sees a partially written file
+            if (temporary.renameTo(file)) {
+                trimDisk();
+            }
+        });
+    }
+
+    /**
+     * Deletes the least recently used files until the disk tier fits in its bound.
+     */
+    private void trimDisk() {
+        File[] files = diskDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
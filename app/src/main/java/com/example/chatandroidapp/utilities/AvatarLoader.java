@@ -0,0 +1,327 @@
+package com.example.chatandroidapp.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Base64;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.firebase.AvatarStore;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AvatarLoader displays user avatars without decoding anything on the main thread.
+ * Avatars found in the memory tier of {@link AvatarCache} are set immediately; any other avatar is
+ * read from disk, from {@link BlobStore} for the signed-in user, or lazily fetched from {@link AvatarStore}
+ * without holding a thread, then decoded on a small pool of background threads, subsampled to the size of its ImageView and,
+ * when possible, decoded into the memory of a Bitmap that is no longer displayed.
+ * <p>
+ * Requests for the same avatar are coalesced into a single decode, a request is cancelled as soon as
+ * no ImageView waits for it anymore, and a result is only set on ImageViews still asking for it.
+ * All public methods must be called from the main thread.
+ */
+public class AvatarLoader {
+
+    private static final String TAG = "AvatarLoader";
+    private static final int THREAD_COUNT =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)); // Bounded decode parallelism
+    private static final long BITMAP_POOL_BYTES = 4L * 1024 * 1024; // Memory kept for inBitmap reuse
+
+    private static AvatarLoader instance;
+
+    private final AvatarCache avatarCache;
+    private final BlobStore blobStore; // Holds the signed-in user's own avatar
+    private final BitmapPool bitmapPool = new BitmapPool(BITMAP_POOL_BYTES);
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, Request> requests = new HashMap<>(); // In-flight decodes by cache key
+    private final Map<ImageView, String> targets = new WeakHashMap<>(); // Cache key currently wanted by each ImageView
+    private final Map<String, Integer> boundKeys = new ConcurrentHashMap<>(); // Keys wanted by at least one ImageView
+
+    /**
+     * Returns the application-wide AvatarLoader.
+     *
+     * @param context Any context, only its application context is retained.
+     * @return The shared AvatarLoader instance.
+     */
+    public static synchronized AvatarLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AvatarLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AvatarLoader(Context context) {
+        avatarCache = AvatarCache.getInstance(context);
+        blobStore = BlobStore.getInstance(context);
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, TAG));
+
+        // Evicted Bitmaps that no ImageView is showing can be decoded into again
+        avatarCache.setEvictionListener((key, bitmap) -> {
+            if (!boundKeys.containsKey(key)) {
+                bitmapPool.put(bitmap);
+            }
+        });
+    }
+
+    /**
+     * Displays the avatar of a user in an ImageView, replacing any request previously made for it.
+     *
+     * @param imageView    The ImageView to fill.
+     * @param userId       The ID of the user owning the avatar.
+     * @param imageHash    The content hash of the avatar, see {@link AvatarStore#hashOf(byte[])}, or null if the
+     *                     user has no avatar.
+     * @param encodedImage The Base64 avatar of a user document created before the Avatars collection, or null.
+     *                     Only read for its bytes: the avatar is still identified by its hash.
+     */
+    public void load(ImageView imageView, String userId, String imageHash, String encodedImage) {
+        cancel(imageView);
+        if (imageHash == null || imageHash.isEmpty()) {
+            imageView.setImageResource(R.drawable.ic_default_profile);
+            return;
+        }
+        boolean hasInlineImage = encodedImage != null && !encodedImage.isEmpty();
+
+        String key = AvatarCache.keyOf(userId, imageHash);
+        bind(imageView, key);
+
+        Bitmap bitmap = avatarCache.getFromMemory(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+
+        imageView.setImageDrawable(null);
+        Request request = requests.get(key);
+        if (request == null) {
+            request = new Request(key, userId, hasInlineImage ? encodedImage : null, getTargetSize(imageView));
+            requests.put(key, request);
+            executor.execute(request);
+        }
+        request.imageViews.add(imageView);
+    }
+
+    /**
+     * Cancels the request made for an ImageView, typically when its ViewHolder is recycled.
+     * The decode itself is dropped once no other ImageView waits for the same avatar.
+     *
+     * @param imageView The ImageView whose request is cancelled.
+     */
+    public void cancel(ImageView imageView) {
+        String key = targets.remove(imageView);
+        if (key == null) {
+            return;
+        }
+        unbind(key);
+
+        Request request = requests.get(key);
+        if (request != null) {
+            request.imageViews.remove(imageView);
+            if (request.imageViews.isEmpty()) {
+                requests.remove(key);
+                request.isCancelled = true;
+                executor.remove(request);
+            }
+        }
+    }
+
+    private void bind(ImageView imageView, String key) {
+        targets.put(imageView, key);
+        boundKeys.merge(key, 1, Integer::sum);
+    }
+
+    private void unbind(String key) {
+        boundKeys.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Delivers a decoded avatar to the ImageViews that still want it. Runs on the main thread.
+     *
+     * @param request The completed request.
+     * @param bitmap  The decoded avatar, or null if decoding failed.
+     */
+    private void deliver(Request request, Bitmap bitmap) {
+        if (requests.get(request.key) == request) {
+            requests.remove(request.key);
+        }
+        for (ImageView imageView : request.imageViews) {
+            // Drop stale results: the ImageView may have been rebound to another avatar since
+            if (!request.key.equals(targets.get(imageView))) {
+                continue;
+            }
+            if (bitmap != null) {
+                imageView.setImageBitmap(bitmap);
+            } else {
+                imageView.setImageResource(R.drawable.ic_default_profile);
+            }
+        }
+    }
+
+    /**
+     * Decodes image bytes, subsampled so that the result is not much larger than the target size,
+     * and into a pooled Bitmap when one is large enough. Runs on a background thread.
+     *
+     * @param bytes      The raw image bytes.
+     * @param targetSize The size in pixels of the view displaying the image, or 0 for the full size.
+     * @param bitmapPool The pool of Bitmaps to decode into.
+     * @return The decoded Bitmap, or null if the bytes are not an image.
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+    public static Bitmap decode(byte[] bytes, int targetSize, BitmapPool bitmapPool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetSize);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true; // Keeps the result reusable through the pool
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = bitmapPool.get(
+                (options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize,
+                Bitmap.Config.ARGB_8888);
+
+        try {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled Bitmap could not be reused, decode into a new one
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+    }
+
+    /**
+     * Computes the largest power of two that keeps both dimensions at or above the target size.
+     *
+     * @param width      The width of the encoded image.
+     * @param height     The height of the encoded image.
+     * @param targetSize The size in pixels of the view, or 0 for no subsampling.
+     * @return The inSampleSize to decode with.
+     */
+    static int calculateInSampleSize(int width, int height, int targetSize) {
+        int sampleSize = 1;
+        if (targetSize <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetSize && height / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @param imageView The ImageView displaying the avatar.
+     * @return The largest dimension of the ImageView in pixels, or 0 if it is not known yet.
+     */
+    private static int getTargetSize(ImageView imageView) {
+        ViewGroup.LayoutParams layoutParams = imageView.getLayoutParams();
+        int width = layoutParams != null && layoutParams.width > 0 ? layoutParams.width : imageView.getWidth();
+        int height = layoutParams != null && layoutParams.height > 0 ? layoutParams.height : imageView.getHeight();
+        return Math.max(width, height);
+    }
+
+    /**
+     * A decode of one avatar, shared by every ImageView waiting for it.
+     */
+    private class Request implements Runnable {
+        final String key;
+        final String userId;
+        final String encodedImage; // Null when the avatar lives in the Avatars collection
+        final int targetSize;
+        final List<ImageView> imageViews = new ArrayList<>(); // Main thread only
+        volatile boolean isCancelled;
+
+        Request(String key, String userId, String encodedImage, int targetSize) {
+            this.key = key;
+            this.userId = userId;
+            this.encodedImage = encodedImage;
+            this.targetSize = targetSize;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled) {
+                return;
+            }
+            byte[] bytes = avatarCache.getFromDisk(key);
+            if (bytes == null) {
+                bytes = blobStore.get(key);
+            }
+            if (bytes != null) {
+                decodeAndDeliver(bytes);
+                return;
+            }
+
+            avatarCache.recordMiss();
+            if (encodedImage != null) {
+                try {
+                    bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Unable to decode " + key, e);
+                }
+                if (bytes != null) {
+                    avatarCache.putOnDisk(key, bytes);
+                }
+                decodeAndDeliver(bytes);
+                return;
+            }
+            // Only the decode of the result comes back to the pool: a slow fetch must not hold a decode thread
+            AvatarStore.fetch(FirebaseFirestore.getInstance(), userId).addOnCompleteListener(executor, task -> {
+                byte[] fetched = task.isSuccessful() ? task.getResult() : null;
+                if (fetched != null) {
+                    avatarCache.putOnDisk(key, fetched); // Kept even if cancelled, the row may be shown again
+                }
+                decodeAndDeliver(fetched);
+            });
+        }
+
+        /**
+         * Decodes the bytes of the avatar, unless the request was cancelled meanwhile, and delivers the result.
+         *
+         * @param bytes The raw image bytes, or null if there are none.
+         */
+        private void decodeAndDeliver(byte[] bytes) {
+            if (isCancelled) {
+                return;
+            }
+            Bitmap bitmap = null;
+            try {
+                bitmap = bytes != null ? decode(bytes, targetSize, bitmapPool) : null;
+                if (bitmap != null) {
+                    avatarCache.putInMemory(key, bitmap);
+                }
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unable to decode " + key, e);
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> deliver(this, result));
+        }
+    }
+}
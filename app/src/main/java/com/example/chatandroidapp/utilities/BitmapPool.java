@@ -0,0 +1,80 @@
+package com.example.chatandroidapp.utilities;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * BitmapPool keeps a few mutable Bitmaps that are no longer displayed so that their memory can be
+ * reused through {@code BitmapFactory.Options.inBitmap} instead of allocating a new Bitmap per decode.
+ * The pool is bounded in bytes and is safe to use from several threads.
+ */
+public class BitmapPool {
+
+    private final long maxBytes; // Upper bound of the memory held by the pool
+    private final List<Bitmap> bitmaps = new ArrayList<>(); // Reusable Bitmaps, oldest first
+    private long currentBytes;
+
+    /**
+     * Constructor for BitmapPool.
+     *
+     * @param maxBytes The maximum number of bytes kept in the pool.
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Offers a Bitmap for reuse. Immutable, recycled or oversized Bitmaps are ignored.
+     *
+     * @param bitmap A Bitmap that is no longer referenced by any view.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) {
+            return;
+        }
+        bitmaps.add(bitmap);
+        currentBytes += size;
+        // Drop the oldest entries to stay within bounds
+        while (currentBytes > maxBytes && !bitmaps.isEmpty()) {
+            currentBytes -= bitmaps.remove(0).getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Takes a Bitmap large enough to hold an image of the given size.
+     *
+     * @param width  The width of the image to decode.
+     * @param height The height of the image to decode.
+     * @param config The configuration of the image to decode.
+     * @return A reusable Bitmap, or null if none is large enough.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long required = (long) width * height * bytesPerPixel(config);
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (bitmap.getAllocationByteCount() >= required && bitmap.getConfig() == config) {
+                iterator.remove();
+                currentBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.chatandroidapp.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * BlobStore keeps binary values in app-private files, one file per key.
+ * Unlike the {@link AvatarCache} disk tier it lives in the files directory, so the system never
+ * purges it, and it is never trimmed. It holds values that must survive until sign-out, such as
+ * the signed-in user's own avatar, which used to be stored as Base64 in SharedPreferences.
+ * Every method does disk I/O and must be called from a background thread.
+ */
+public class BlobStore {
+
+    private static final String TAG = "BlobStore";
+    private static final String DIRECTORY = "blobs"; // Sub-directory of the files directory
+
+    private static BlobStore instance;
+
+    private final File directory;
+
+    /**
+     * Returns the application-wide BlobStore.
+     *
+     * @param context Any context, only its application context is retained.
+     * @return The shared BlobStore instance.
+     */
+    public static synchronized BlobStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlobStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BlobStore(Context context) {
+        directory = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * @param key The key of the value.
+     * @return The stored bytes, or null if there is no value for the key.
+     */
+    public byte[] get(String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        // Avatars are a few kilobytes, so a plain read is cheaper than mapping the file
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+            return bytes;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a value, replacing any previous one. A reader never sees a partially written value.
+     *
+     * @param key   The key of the value.
+     * @param bytes The bytes to store.
+     * @return true if the value was stored.
+     */
+    public boolean put(String key, byte[] bytes) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return false;
+        }
+        File temporary = new File(directory, key + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temporary)) {
+            outputStream.write(bytes);
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + key, e);
+            temporary.delete();
+            return false;
+        }
+        return temporary.renameTo(new File(directory, key));
+    }
+
+    /**
+     * Deletes every stored value.
+     */
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -13,6 +13,41 @@ public class Constants {
      */
     public static final String KEY_COLLECTION_USERS = "Users";
 
+    /**
+     * Key for the Avatars collection in Firebase Firestore, holding one profile image per user ID.
+     */
+    public static final String KEY_COLLECTION_AVATARS = "Avatars";
+
+    /**
+     * Key for the sub-collection of an avatar holding its larger sizes, keyed by size name.
+     */
+    public static final String KEY_COLLECTION_AVATAR_SIZES = "Sizes";
+
+    /**
+     * Name of the avatar size shown on a profile.
+     */
+    public static final String AVATAR_SIZE_PROFILE = "profile";
+
+    /**
+     * Name of the avatar size shown full screen.
+     */
+    public static final String AVATAR_SIZE_FULL = "full";
+
+    /**
+     * Key for the Directory collection, holding digests of the Users collection split into shards.
+     */
+    public static final String KEY_COLLECTION_DIRECTORY = "Directory";
+
+    /**
+     * Key for the map of a directory shard holding one compact entry per user ID.
+     */
+    public static final String KEY_ENTRIES = "entries";
+
+    /**
+     * Key for the Emails collection in Firebase Firestore, holding the credentials of each normalized email.
+     */
+    public static final String KEY_COLLECTION_EMAILS = "Emails";
+
     /**
      * Key for the user's name.
      */
@@ -28,6 +63,21 @@ public class Constants {
      */
     public static final String KEY_PASSWORD = "password";
 
+    /**
+     * Key for the salted hash of the user's password.
+     */
+    public static final String KEY_PASSWORD_HASH = "passwordHash";
+
+    /**
+     * Key for the salt the user's password was hashed with.
+     */
+    public static final String KEY_PASSWORD_SALT = "passwordSalt";
+
+    /**
+     * Key for the number of iterations the user's password was hashed with.
+     */
+    public static final String KEY_PASSWORD_ITERATIONS = "passwordIterations";
+
     /**
      * Key for the user's ID.
      */
@@ -48,6 +98,220 @@ public class Constants {
      */
     public static final String KEY_IMAGE = "image";
 
+    /**
+     * Key for the content hash of the user's profile image.
+     */
+    public static final String KEY_IMAGE_HASH = "imageHash";
+
 
     public static final String KEY_FCM_TOKEN = "fcmToken";
+
+    /**
+     * Key for the last FCM token the server acknowledged for the signed-in user.
+     */
+    public static final String KEY_FCM_TOKEN_SYNCED = "fcmTokenSynced";
+
+    /**
+     * Key for the time a user document was last updated, used to sync the local user directory.
+     */
+    public static final String KEY_UPDATED_AT = "updatedAt";
+
+    /**
+     * Key for the Conversations collection in Firebase Firestore, one document per pair of users.
+     */
+    public static final String KEY_COLLECTION_CONVERSATIONS = "Conversations";
+
+    /**
+     * Key for the Messages sub-collection of a conversation.
+     */
+    public static final String KEY_COLLECTION_MESSAGES = "Messages";
+
+    /**
+     * Key for the user passed to an activity in its Intent.
+     */
+    public static final String KEY_USER = "user";
+
+    /**
+     * Key for the ID of the user a message is sent to.
+     */
+    public static final String KEY_RECEIVER_ID = "receiverId";
+
+    /**
+     * Key for the ID of a message, in the data payload of a message push.
+     */
+    public static final String KEY_MESSAGE_ID = "messageId";
+
+    /**
+     * Key for the ID of the conversation a message belongs to.
+     */
+    public static final String KEY_CONVERSATION_ID = "conversationId";
+
+    /**
+     * Key for the ID of the user who sent a message.
+     */
+    public static final String KEY_SENDER_ID = "senderId";
+
+    /**
+     * Key for the name of the user who sent a message.
+     */
+    public static final String KEY_SENDER_NAME = "senderName";
+
+    /**
+     * Key for the text of a message.
+     */
+    public static final String KEY_MESSAGE = "message";
+
+    /**
+     * Key for the time a message was sent, in milliseconds.
+     */
+    public static final String KEY_TIMESTAMP = "timestamp";
+
+    /**
+     * Key for the Inbox sub-collection of a user, one entry per conversation.
+     */
+    public static final String KEY_COLLECTION_INBOX = "Inbox";
+
+    /**
+     * Key for the ID of the other participant of an inbox entry.
+     */
+    public static final String KEY_PEER_ID = "peerId";
+
+    /**
+     * Key for the name of the other participant of an inbox entry.
+     */
+    public static final String KEY_PEER_NAME = "peerName";
+
+    /**
+     * Key for the avatar hash of the other participant of an inbox entry.
+     */
+    public static final String KEY_PEER_IMAGE_HASH = "peerImageHash";
+
+    /**
+     * Key for the text of the last message of an inbox entry.
+     */
+    public static final String KEY_LAST_MESSAGE = "lastMessage";
+
+    /**
+     * Key for the ID of the sender of the last message of an inbox entry.
+     */
+    public static final String KEY_LAST_SENDER_ID = "lastSenderId";
+
+    /**
+     * Key for the IDs of the messages of an inbox entry not read yet, a map from message ID to true.
+     */
+    public static final String KEY_UNREAD = "unread";
+
+    /**
+     * ID of the notification channel for new messages.
+     */
+    public static final String NOTIFICATION_CHANNEL_MESSAGES = "messages";
+
+    /**
+     * ID of the notification channel for the warnings of debug builds.
+     */
+    public static final String NOTIFICATION_CHANNEL_DEBUG = "debug";
+
+    /**
+     * Maximum number of message notifications posted or updated per second, across all conversations.
+     */
+    public static final int NOTIFICATIONS_PER_SECOND = 2;
+
+    /**
+     * Maximum number of message lines shown in the notification of a conversation.
+     */
+    public static final int NOTIFICATION_MAX_LINES = 5;
+
+    /**
+     * Number of the latest pushed message IDs remembered, so that a push delivered twice is notified once.
+     */
+    public static final int RECENT_MESSAGE_IDS = 500;
+
+    /**
+     * Number of users read per page from the local user directory.
+     */
+    public static final int USERS_PAGE_SIZE = 25;
+
+    /**
+     * Number of remaining rows below the last visible one at which the next page of users is requested.
+     */
+    public static final int USERS_PREFETCH_DISTANCE = 10;
+
+    /**
+     * Maximum number of users held by the user list. Pages scrolled past beyond it are dropped, and read
+     * again when scrolling back. Also the number of search results shown.
+     */
+    public static final int USERS_WINDOW_SIZE = 4 * USERS_PAGE_SIZE;
+
+    /**
+     * Number of changed user documents read per request when syncing the local user directory.
+     */
+    public static final int USERS_SYNC_BATCH_SIZE = 200;
+
+    /**
+     * Number of directory shards. Users are spread over them by ID, so 10,000 users take about 310 entries,
+     * roughly 50 KB, per shard, and the whole directory loads in this many document reads.
+     */
+    public static final int DIRECTORY_SHARD_COUNT = 32;
+
+    /**
+     * Maximum number of Firestore document reads per opening of the user list. Loading the directory costs
+     * one read per shard, so going over means the list fell back to reading one document per user.
+     */
+    public static final long READ_BUDGET_USER_LIST = 200;
+
+    /**
+     * Number of days of Firestore usage totals kept on the device.
+     */
+    public static final int COST_RETENTION_DAYS = 30;
+
+    /**
+     * Number of messages read per page of a conversation.
+     */
+    public static final int MESSAGES_PAGE_SIZE = 30;
+
+    /**
+     * Maximum number of messages of a conversation kept in memory; pages beyond it are dropped.
+     */
+    public static final int MESSAGES_WINDOW_SIZE = 150;
+
+    /**
+     * Number of remaining rows before either end of a conversation at which the next page is requested.
+     */
+    public static final int MESSAGES_PREFETCH_DISTANCE = 10;
+
+    /**
+     * Maximum number of queued messages delivered per Firestore write batch. With the two inbox entries
+     * updated per conversation, a batch stays well below the 500 writes Firestore allows.
+     */
+    public static final int OUTBOX_BATCH_SIZE = 50;
+
+    /**
+     * Maximum number of recent conversations listened to on the main screen.
+     */
+    public static final int INBOX_SIZE = 50;
+
+    /**
+     * Delay in milliseconds after the last keystroke before the user directory is searched.
+     */
+    public static final long SEARCH_DEBOUNCE_MILLIS = 250;
+
+    /**
+     * Longest edge in pixels of the avatar shown in lists and toolbars, the one stored in the Avatars collection.
+     */
+    public static final int AVATAR_THUMBNAIL_PIXELS = 128;
+
+    /**
+     * Longest edge in pixels of the avatar shown on a profile.
+     */
+    public static final int AVATAR_PROFILE_PIXELS = 512;
+
+    /**
+     * Longest edge in pixels of the avatar shown full screen.
+     */
+    public static final int AVATAR_FULL_PIXELS = 1280;
+
+    /**
+     * Compression quality of the avatars, from 0 to 100.
+     */
+    public static final int AVATAR_QUALITY = 80;
 }
\ No newline at end of file
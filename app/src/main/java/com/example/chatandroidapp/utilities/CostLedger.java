@@ -0,0 +1,83 @@
+package com.example.chatandroidapp.utilities;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CostLedger counts the Firestore document reads of each visit of a screen against the budget of the screen.
+ * A visit starts each time the screen is shown, and goes over budget at most once.
+ * It has no Android dependency, so that it can be tested on the JVM.
+ */
+public class CostLedger {
+
+    /**
+     * A visit that went over the read budget of its screen.
+     */
+    public static class Overrun {
+        public final String screen;
+        public final String operation; // The operation whose reads crossed the budget
+        public final long reads; // Reads of the visit so far
+        public final long budget;
+
+        Overrun(String screen, String operation, long reads, long budget) {
+            this.screen = screen;
+            this.operation = operation;
+            this.reads = reads;
+            this.budget = budget;
+        }
+    }
+
+    private final Map<String, Long> readBudgets; // Maximum reads per visit, by screen
+    private final Map<String, Long> visitReads = new HashMap<>(); // Reads of the current visit, by screen
+    private final Set<String> overBudget = new HashSet<>(); // Screens whose current visit already went over
+
+    /**
+     * Constructor for CostLedger.
+     *
+     * @param readBudgets The maximum number of reads per visit of each screen; other screens are not limited.
+     */
+    public CostLedger(Map<String, Long> readBudgets) {
+        this.readBudgets = new HashMap<>(readBudgets);
+    }
+
+    /**
+     * Starts a new visit of a screen, whose reads count from zero.
+     *
+     * @param screen The screen shown.
+     */
+    public synchronized void startVisit(String screen) {
+        visitReads.put(screen, 0L);
+        overBudget.remove(screen);
+    }
+
+    /**
+     * Adds reads to the current visit of a screen.
+     *
+     * @param screen    The screen the reads are attributed to.
+     * @param operation The operation making the reads.
+     * @param reads     The number of documents read.
+     * @return The overrun if these reads took the visit over budget, null otherwise.
+     */
+    public synchronized Overrun addReads(String screen, String operation, long reads) {
+        Long current = visitReads.get(screen);
+        long total = (current != null ? current : 0) + reads;
+        visitReads.put(screen, total);
+
+        Long budget = readBudgets.get(screen);
+        if (budget == null || total <= budget || !overBudget.add(screen)) {
+            return null;
+        }
+        return new Overrun(screen, operation, total, budget);
+    }
+
+    /**
+     * @param screen A screen.
+     * @return The reads of its current visit.
+     */
+    public synchronized long getVisitReads(String screen) {
+        Long reads = visitReads.get(screen);
+        return reads != null ? reads : 0;
+    }
+}
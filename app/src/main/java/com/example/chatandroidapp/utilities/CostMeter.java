@@ -0,0 +1,248 @@
+package com.example.chatandroidapp.utilities;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.Application;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.chatandroidapp.BuildConfig;
+import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.activities.UserActivity;
+import com.example.chatandroidapp.database.CostStore;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CostMeter attributes the Firestore document reads, writes and bytes received of the traced calls and
+ * listeners to the screen shown when they complete, and adds them to the daily totals of {@link CostStore}.
+ * Results served from the local cache cost nothing and are not counted. A visit of a screen reading more
+ * than its budget logs a warning, and debug builds also post a notification.
+ */
+public class CostMeter implements TaskTracer.Listener, Application.ActivityLifecycleCallbacks {
+
+    private static final String TAG = "CostMeter";
+    private static final String SCREEN_BACKGROUND = "background"; // Calls completing while no screen is shown
+    private static final int NOTIFICATION_ID = 1; // Each screen has its own notification, tagged with its name
+    private static final int DOCUMENT_OVERHEAD_BYTES = 32; // Name and metadata of a document, roughly
+
+    private static volatile CostMeter instance;
+
+    private final Context context;
+    private final CostStore costStore;
+    private final CostLedger ledger;
+    private volatile String screen = SCREEN_BACKGROUND;
+
+    private CostMeter(Context context) {
+        this.context = context;
+        costStore = new CostStore(context);
+        ledger = new CostLedger(Collections.singletonMap(
+                UserActivity.class.getSimpleName(), Constants.READ_BUDGET_USER_LIST));
+        AppExecutors.diskIO().execute(() -> costStore.deleteBefore(dayOf(-Constants.COST_RETENTION_DAYS)));
+    }
+
+    /**
+     * @param context Any context, only its application context is retained.
+     * @return The single instance of CostMeter.
+     */
+    public static CostMeter getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CostMeter.class) {
+                if (instance == null) {
+                    instance = new CostMeter(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onTaskCompleted(String operation, Object result, long writes) {
+        String current = screen;
+        AppExecutors.diskIO().execute(() -> {
+            long reads = 0;
+            long bytes = 0;
+            if (result instanceof QuerySnapshot && !((QuerySnapshot) result).getMetadata().isFromCache()) {
+                List<DocumentSnapshot> documents = ((QuerySnapshot) result).getDocuments();
+                reads = Math.max(1, documents.size()); // An empty result still costs one read
+                for (DocumentSnapshot document : documents) {
+                    bytes += sizeOf(document);
+                }
+            } else if (result instanceof DocumentSnapshot && !((DocumentSnapshot) result).getMetadata().isFromCache()) {
+                reads = 1;
+                bytes = sizeOf((DocumentSnapshot) result);
+            }
+            record(current, operation, reads, writes, bytes);
+        });
+    }
+
+    @Override
+    public void onSnapshot(String operation, QuerySnapshot snapshot) {
+        if (snapshot.getMetadata().isFromCache()) {
+            return;
+        }
+        String current = screen;
+        AppExecutors.diskIO().execute(() -> {
+            // A listener is charged for the documents it is sent, which are the changes of each snapshot
+            long reads = 0;
+            long bytes = 0;
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                if (change.getType() != DocumentChange.Type.REMOVED) {
+                    reads++;
+                    bytes += sizeOf(change.getDocument());
+                }
+            }
+            record(current, operation, reads, 0, bytes);
+        });
+    }
+
+    /**
+     * Logs the totals of the day, most reads first. Must be called from a background thread.
+     */
+    public void logTotals() {
+        for (CostStore.Total total : costStore.getTotals(dayOf(0))) {
+            Log.i(TAG, total.screen + " " + total.operation
+                    + " reads=" + total.reads
+                    + " writes=" + total.writes
+                    + " bytes=" + total.bytes);
+        }
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        screen = activity.getClass().getSimpleName();
+        ledger.startVisit(screen);
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        // The next activity starts before the previous one stops, so only the screen still shown is cleared
+        if (activity.getClass().getSimpleName().equals(screen)) {
+            screen = SCREEN_BACKGROUND;
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+
+    /**
+     * Adds usage to the totals and checks the budget of the visit. Runs on disk I/O.
+     */
+    private void record(String screen, String operation, long reads, long writes, long bytes) {
+        if (reads == 0 && writes == 0) {
+            return;
+        }
+        costStore.add(dayOf(0), screen, operation, reads, writes, bytes);
+
+        CostLedger.Overrun overrun = ledger.addReads(screen, operation, reads);
+        if (overrun != null) {
+            Log.w(TAG, overrun.screen + " read " + overrun.reads + " documents, over its budget of "
+                    + overrun.budget + ", last by " + overrun.operation);
+            if (BuildConfig.DEBUG) {
+                notifyOverrun(overrun);
+            }
+        }
+    }
+
+    private void notifyOverrun(CostLedger.Overrun overrun) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && ContextCompat.checkSelfPermission(
+                context, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(new NotificationChannel(
+                    Constants.NOTIFICATION_CHANNEL_DEBUG,
+                    context.getString(R.string.notification_channel_debug),
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+        notificationManager.notify(overrun.screen, NOTIFICATION_ID,
+                new NotificationCompat.Builder(context, Constants.NOTIFICATION_CHANNEL_DEBUG)
+                        .setSmallIcon(R.drawable.ic_warning)
+                        .setContentTitle(overrun.operation)
+                        .setContentText(context.getString(R.string.notification_read_budget,
+                                overrun.screen, overrun.reads, overrun.budget))
+                        .setAutoCancel(true)
+                        .build());
+    }
+
+    /**
+     * @param offset A number of days from today.
+     * @return The day, as yyyy-MM-dd.
+     */
+    private static String dayOf(int offset) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, offset);
+        return String.format(Locale.US, "%tF", calendar);
+    }
+
+    /**
+     * @return The estimated size of a document on the wire, in bytes.
+     */
+    private static long sizeOf(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return DOCUMENT_OVERHEAD_BYTES + document.getId().length() + (data != null ? sizeOf(data) : 0);
+    }
+
+    /**
+     * @return The estimated size of a field value, in bytes, after the sizes Firestore gives for storage.
+     */
+    private static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length() + 1;
+        } else if (value instanceof Blob) {
+            return ((Blob) value).toBytes().length;
+        } else if (value instanceof Map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            long size = 0;
+            for (Object element : (Collection<?>) value) {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (value instanceof Boolean || value == null) {
+            return 1;
+        }
+        return 8; // Numbers, timestamps and references, roughly
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.chatandroidapp.utilities;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageImporter turns a picked photo into the avatar sizes stored for a user.
+ * The photo is read three times as a stream: once for its bounds, once to decode it subsampled close
+ * to the largest size needed, and once for its EXIF orientation. A 48 MP photo is therefore never
+ * held in memory at full resolution. Each size is then scaled, rotated upright and compressed to WebP.
+ */
+public class ImageImporter {
+
+    // One import at a time, off the main thread; a new pick while one is queued is rejected
+    private static final ExecutorService IMPORT_EXECUTOR = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), runnable -> new Thread(runnable, "ImageImporter"));
+
+    private static final int MAX_ENCODED_BYTES = 900 * 1024; // Below the 1 MiB limit of a Firestore document
+    private static final int MIN_QUALITY = 30; // Lowest quality tried to fit the limit
+    private static final int QUALITY_STEP = 15;
+
+    /**
+     * The compressed sizes of an imported image.
+     */
+    public static class Variants {
+        public final byte[] thumbnail, profile, full;
+        public final Bitmap preview; // The profile size, decoded, to show right away
+
+        @VisibleForTesting
+        public Variants(byte[] thumbnail, byte[] profile, byte[] full, Bitmap preview) {
+            this.thumbnail = thumbnail;
+            this.profile = profile;
+            this.full = full;
+            this.preview = preview;
+        }
+    }
+
+    private ImageImporter() {
+    }
+
+    /**
+     * Imports an image on a background thread.
+     *
+     * @param contentResolver The resolver used to open the image.
+     * @param uri             The image picked by the user.
+     * @return The task of the import, failing if the image cannot be read or decoded.
+     */
+    public static Task<Variants> importImage(ContentResolver contentResolver, Uri uri) {
+        return Tasks.call(IMPORT_EXECUTOR, () -> decode(contentResolver, uri));
+    }
+
+    /**
+     * Imports an image on the calling thread.
+     *
+     * @param contentResolver The resolver used to open the image.
+     * @param uri             The image to import.
+     * @return The sizes of the image.
+     * @throws IOException If the image cannot be read or decoded.
+     */
+    public static Variants decode(ContentResolver contentResolver, Uri uri) throws IOException {
+        // Bounds only: no pixel is allocated
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + uri);
+        }
+
+        // Subsampled decode, at least as large as the full size
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSizeFor(options.outWidth, options.outHeight, Constants.AVATAR_FULL_PIXELS);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            decoded = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + uri);
+        }
+
+        int orientation;
+        try (InputStream inputStream = open(contentResolver, uri)) {
+            orientation = new ExifInterface(inputStream)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            orientation = ExifInterface.ORIENTATION_NORMAL; // No readable EXIF: show the pixels as stored
+        }
+
+        // Each size is scaled from the previous one, so only the first one transforms the decoded image
+        Bitmap full = transform(decoded, orientation, Constants.AVATAR_FULL_PIXELS);
+        Bitmap profile = transform(full, ExifInterface.ORIENTATION_NORMAL, Constants.AVATAR_PROFILE_PIXELS);
+        Bitmap thumbnail = transform(profile, ExifInterface.ORIENTATION_NORMAL, Constants.AVATAR_THUMBNAIL_PIXELS);
+
+        Variants variants = new Variants(compress(thumbnail), compress(profile), compress(full), profile);
+        recycle(decoded, full, profile, thumbnail);
+        return variants;
+    }
+
+    /**
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param target The longest edge needed, in pixels.
+     * @return The largest power of two by which the image can be subsampled while its longest edge
+     * stays at least the target.
+     */
+    static int sampleSizeFor(int width, int height, int target) {
+        int longestEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longestEdge / (sampleSize * 2) >= target) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param target The maximum longest edge, in pixels.
+     * @return The scale bringing the longest edge down to the target; images already smaller are not enlarged.
+     */
+    static float scaleFor(int width, int height, int target) {
+        return Math.min(1f, (float) target / Math.max(width, height));
+    }
+
+    private static InputStream open(ContentResolver contentResolver, Uri uri) throws FileNotFoundException {
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return inputStream;
+    }
+
+    /**
+     * @return The bitmap scaled down to the target and made upright, or the same bitmap if nothing changes.
+     */
+    private static Bitmap transform(Bitmap bitmap, int orientation, int target) {
+        float scale = scaleFor(bitmap.getWidth(), bitmap.getHeight(), target);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                break;
+        }
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    /**
+     * Compresses to lossy WebP, lowering the quality if needed to fit in a Firestore document.
+     */
+    @SuppressWarnings("deprecation")
+    private static byte[] compress(Bitmap bitmap) {
+        // WEBP_LOSSY only exists from API 30; before it, WEBP below quality 100 is lossy
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int quality = Constants.AVATAR_QUALITY;
+        bitmap.compress(format, quality, outputStream);
+        while (outputStream.size() > MAX_ENCODED_BYTES && quality - QUALITY_STEP >= MIN_QUALITY) {
+            quality -= QUALITY_STEP;
+            outputStream.reset();
+            bitmap.compress(format, quality, outputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Recycles intermediate bitmaps, keeping the profile size used as the preview.
+     */
+    private static void recycle(Bitmap decoded, Bitmap full, Bitmap profile, Bitmap thumbnail) {
+        if (thumbnail != profile) {
+            thumbnail.recycle();
+        }
+        if (full != profile) {
+            full.recycle();
+        }
+        if (decoded != full && decoded != profile) {
+            decoded.recycle();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.chatandroidapp.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LatencyHistogram counts durations into buckets growing by a fixed ratio, so that it holds any number
+ * of samples in constant memory while its percentiles stay within that ratio of the true value.
+ * It has no Android dependency, so that it can be tested on the JVM.
+ */
+public class LatencyHistogram {
+
+    private static final double BUCKET_RATIO = 1.25; // Percentiles are at most 25% above the true value
+    private static final long MAX_TRACKED_MILLIS = 120_000; // Longer durations all land in the last bucket
+    private static final long[] UPPER_BOUNDS = upperBounds(); // Inclusive upper bound of each bucket, in milliseconds
+
+    private final long[] counts = new long[UPPER_BOUNDS.length];
+    private long count;
+    private long max;
+
+    /**
+     * @param millis A duration in milliseconds; negative durations count as zero.
+     */
+    public synchronized void record(long millis) {
+        long duration = Math.max(0, millis);
+        counts[bucketOf(duration)]++;
+        count++;
+        max = Math.max(max, duration);
+    }
+
+    /**
+     * @return The number of durations recorded.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The longest duration recorded, in milliseconds, or 0 if none was.
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, capped to the longest duration recorded,
+     * in milliseconds, or 0 if nothing was recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        // Rank of the sample at the percentile, at least the first one
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(UPPER_BOUNDS[i], max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucketOf(long millis) {
+        int low = 0;
+        int high = UPPER_BOUNDS.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (UPPER_BOUNDS[middle] >= millis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static long[] upperBounds() {
+        List<Long> bounds = new ArrayList<>();
+        double bound = 1;
+        while (bound < MAX_TRACKED_MILLIS) {
+            long rounded = (long) Math.ceil(bound);
+            if (bounds.isEmpty() || rounded > bounds.get(bounds.size() - 1)) {
+                bounds.add(rounded);
+            }
+            bound *= BUCKET_RATIO;
+        }
+        bounds.add(Long.MAX_VALUE);
+
+        long[] upperBounds = new long[bounds.size()];
+        for (int i = 0; i < upperBounds.length; i++) {
+            upperBounds[i] = bounds.get(i);
+        }
+        return upperBounds;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.chatandroidapp.utilities;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.service.notification.StatusBarNotification;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.TaskStackBuilder;
+import androidx.core.content.ContextCompat;
+
+import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.activities.ChatActivity;
+import com.example.chatandroidapp.activities.MainActivity;
+import com.example.chatandroidapp.module.ChatMessage;
+import com.example.chatandroidapp.module.User;
+
+import java.util.List;
+
+/**
+ * MessageNotifier posts the message notifications decided by {@link NotificationCoalescer}.
+ * Each conversation has a single notification, tagged with its ID, which is updated in place and
+ * only alerts the first time it is shown. Tapping it opens the conversation, above the main screen.
+ */
+public class MessageNotifier implements NotificationCoalescer.Sink {
+
+    private static final int NOTIFICATION_ID = 1; // Shared by every conversation, which differ by tag
+
+    private final Context context;
+    private final NotificationManagerCompat notificationManager;
+
+    /**
+     * Constructor for MessageNotifier. Creates the notification channel of messages if needed.
+     *
+     * @param context Any context, only its application context is retained.
+     */
+    public MessageNotifier(Context context) {
+        this.context = context.getApplicationContext();
+        notificationManager = NotificationManagerCompat.from(this.context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(new NotificationChannel(
+                    Constants.NOTIFICATION_CHANNEL_MESSAGES,
+                    this.context.getString(R.string.notification_channel_messages),
+                    NotificationManager.IMPORTANCE_HIGH));
+        }
+    }
+
+    @Override
+    public void post(String conversationId, List<ChatMessage> lines, int unreadCount) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && ContextCompat.checkSelfPermission(
+                context, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+
+        ChatMessage latest = lines.get(lines.size() - 1);
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (ChatMessage message : lines) {
+            style.addLine(message.senderName + ": " + message.text);
+        }
+        if (unreadCount > lines.size()) {
+            style.setSummaryText(context.getString(R.string.notification_new_messages, unreadCount));
+        }
+
+        // Notified messages are received ones, so their sender is the other participant
+        User peer = new User();
+        peer.id = latest.senderId;
+        peer.name = latest.senderName;
+        peer.imageHash = latest.senderImageHash;
+        Intent chatIntent = new Intent(context, ChatActivity.class);
+        chatIntent.putExtra(Constants.KEY_USER, peer);
+        // A request code per conversation, so that the intents of two notifications do not replace each other
+        PendingIntent pendingIntent = TaskStackBuilder.create(context)
+                .addNextIntent(new Intent(context, MainActivity.class))
+                .addNextIntent(chatIntent)
+                .getPendingIntent(conversationId.hashCode(),
+                        PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        notificationManager.notify(conversationId, NOTIFICATION_ID,
+                new NotificationCompat.Builder(context, Constants.NOTIFICATION_CHANNEL_MESSAGES)
+                        .setSmallIcon(R.drawable.ic_message)
+                        .setContentTitle(latest.senderName)
+                        .setContentText(latest.text)
+                        .setStyle(style)
+                        .setNumber(unreadCount)
+                        .setWhen(latest.timestamp)
+                        .setOnlyAlertOnce(true) // Updates of a burst stay silent
+                        .setAutoCancel(true)
+                        .setContentIntent(pendingIntent)
+                        .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                        .build());
+    }
+
+    /**
+     * Removes the notification of a conversation.
+     *
+     * @param conversationId The conversation of the notification.
+     */
+    public void cancel(String conversationId) {
+        notificationManager.cancel(conversationId, NOTIFICATION_ID);
+    }
+
+    /**
+     * Removes the notifications of every conversation. The debug notifications of {@link CostMeter} share the
+     * same ID, so message notifications are told apart by their category.
+     */
+    public void cancelAll() {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        for (StatusBarNotification notification : manager.getActiveNotifications()) {
+            if (notification.getId() == NOTIFICATION_ID
+                    && NotificationCompat.CATEGORY_MESSAGE.equals(notification.getNotification().category)) {
+                notificationManager.cancel(notification.getTag(), NOTIFICATION_ID);
+            }
+        }
+    }
+}
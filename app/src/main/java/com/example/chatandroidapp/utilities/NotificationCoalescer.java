@@ -0,0 +1,148 @@
+package com.example.chatandroidapp.utilities;
+
+import com.example.chatandroidapp.module.ChatMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NotificationCoalescer turns a stream of incoming messages into at most one notification per
+ * conversation, updated at a bounded rate. Messages arriving while a conversation waits for its next
+ * update are folded into that update, so a burst of pushes costs a handful of notification calls
+ * instead of one per push. It has no Android dependency, so its timing can be tested on the JVM.
+ */
+public class NotificationCoalescer {
+
+    /**
+     * Receives the notifications to post.
+     */
+    public interface Sink {
+        /**
+         * Posts or updates the notification of a conversation.
+         *
+         * @param conversationId The conversation of the notification.
+         * @param lines          The latest messages of the conversation, oldest first.
+         * @param unreadCount    The number of messages received since the conversation was last cleared.
+         */
+        void post(String conversationId, List<ChatMessage> lines, int unreadCount);
+    }
+
+    /**
+     * Provides time and delayed execution, so that tests can control both.
+     */
+    public interface Scheduler {
+        /**
+         * @return The current time in milliseconds.
+         */
+        long now();
+
+        /**
+         * Runs a task after a delay.
+         *
+         * @param task        The task to run.
+         * @param delayMillis The delay in milliseconds.
+         */
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    private final Sink sink;
+    private final Scheduler scheduler;
+    private final long intervalMillis; // Minimum time between two posts
+    private final int maxLines; // Messages kept per conversation for display
+
+    private final Map<String, Deque<ChatMessage>> lines = new HashMap<>(); // Latest messages by conversation
+    private final Map<String, Integer> unreadCounts = new HashMap<>(); // Messages received by conversation
+    private final Set<String> dirty = new LinkedHashSet<>(); // Conversations waiting for an update, oldest first
+    private long nextPostAt; // Earliest time the next post is allowed
+    private boolean isScheduled; // True while a drain is scheduled
+
+    /**
+     * Constructor for NotificationCoalescer.
+     *
+     * @param sink          Receives the notifications to post.
+     * @param scheduler     Provides time and delayed execution.
+     * @param maxPerSecond  Maximum number of posts per second, across all conversations.
+     * @param maxLines      Maximum number of messages kept per conversation for display.
+     */
+    public NotificationCoalescer(Sink sink, Scheduler scheduler, int maxPerSecond, int maxLines) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.intervalMillis = 1000L / maxPerSecond;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Adds received messages. Their conversations are posted now if the rate allows, or later.
+     *
+     * @param messages The messages received.
+     */
+    public synchronized void add(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            Deque<ChatMessage> conversationLines = lines.get(message.conversationId);
+            if (conversationLines == null) {
+                conversationLines = new ArrayDeque<>();
+                lines.put(message.conversationId, conversationLines);
+            }
+            conversationLines.addLast(message);
+            if (conversationLines.size() > maxLines) {
+                conversationLines.removeFirst();
+            }
+            Integer count = unreadCounts.get(message.conversationId);
+            unreadCounts.put(message.conversationId, count == null ? 1 : count + 1);
+            dirty.add(message.conversationId);
+        }
+        drain();
+    }
+
+    /**
+     * Forgets a conversation, typically because the user opened it.
+     *
+     * @param conversationId The conversation to forget.
+     */
+    public synchronized void clear(String conversationId) {
+        lines.remove(conversationId);
+        unreadCounts.remove(conversationId);
+        dirty.remove(conversationId);
+    }
+
+    /**
+     * Forgets every conversation, typically because the user signed out. A drain already scheduled finds
+     * nothing left to post.
+     */
+    public synchronized void clearAll() {
+        lines.clear();
+        unreadCounts.clear();
+        dirty.clear();
+    }
+
+    /**
+     * Posts as many waiting conversations as the rate allows, and schedules the rest.
+     */
+    private void drain() {
+        long now = scheduler.now();
+        Iterator<String> iterator = dirty.iterator();
+        while (iterator.hasNext() && now >= nextPostAt) {
+            String conversationId = iterator.next();
+            iterator.remove();
+            sink.post(conversationId, new ArrayList<>(lines.get(conversationId)), unreadCounts.get(conversationId));
+            nextPostAt = now + intervalMillis;
+        }
+
+        if (!dirty.isEmpty() && !isScheduled) {
+            isScheduled = true;
+            scheduler.schedule(this::onScheduled, nextPostAt - now);
+        }
+    }
+
+    private synchronized void onScheduled() {
+        isScheduled = false;
+        drain();
+    }
+}
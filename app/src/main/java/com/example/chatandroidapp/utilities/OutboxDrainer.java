@@ -0,0 +1,98 @@
+package com.example.chatandroidapp.utilities;
+
+import java.util.List;
+
+/**
+ * OutboxDrainer delivers the items of a durable queue in order, a batch at a time.
+ * A batch is removed from the queue only after it was written, so a failure or a process death
+ * leaves it queued and the next drain writes it again. Writes must therefore be idempotent,
+ * for example by keying every item with a client-generated ID.
+ * A batch the destination rejects for good is set aside with {@link Queue#reject(List)} instead,
+ * so that it does not hold back the items queued after it.
+ * It has no Android dependency, so that it can be tested on the JVM.
+ */
+public class OutboxDrainer {
+
+    /**
+     * The durable queue being drained.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Queue<T> {
+        /**
+         * @param limit The maximum number of items to read.
+         * @return The oldest items, without removing them, or an empty list once the queue is empty.
+         */
+        List<T> peek(int limit);
+
+        /**
+         * @param items Items previously returned by {@link #peek(int)}, now delivered.
+         */
+        void remove(List<T> items);
+
+        /**
+         * @param items Items previously returned by {@link #peek(int)}, which can never be delivered.
+         *              They must not be returned by {@link #peek(int)} again.
+         */
+        void reject(List<T> items);
+    }
+
+    /**
+     * The destination of the items.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Sink<T> {
+        /**
+         * Writes a batch atomically, returning only once it is acknowledged.
+         *
+         * @param batch The items to write, in order.
+         * @throws RejectedException If writing the batch again cannot succeed.
+         * @throws Exception         If the batch could not be written this time.
+         */
+        void write(List<T> batch) throws Exception;
+    }
+
+    /**
+     * Thrown by a {@link Sink} that rejects a batch for good, for example because it is not allowed to write it.
+     */
+    public static class RejectedException extends Exception {
+        /**
+         * @param cause The failure of the write.
+         */
+        public RejectedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private OutboxDrainer() {
+    }
+
+    /**
+     * Writes the queued items batch after batch until the queue is empty. A rejected batch is set aside
+     * and the drain goes on with the next one.
+     *
+     * @param queue     The queue to drain.
+     * @param sink      The destination of the items.
+     * @param batchSize The maximum number of items per batch.
+     * @param <T>       The type of the items.
+     * @return The number of items delivered.
+     * @throws Exception The failure of a write other than a rejection; the batch that failed and the ones
+     *                   after it stay queued.
+     */
+    public static <T> int drain(Queue<T> queue, Sink<T> sink, int batchSize) throws Exception {
+        int delivered = 0;
+        List<T> batch = queue.peek(batchSize);
+        while (!batch.isEmpty()) {
+            try {
+                sink.write(batch);
+                queue.remove(batch);
+                delivered += batch.size();
+            } catch (RejectedException e) {
+                queue.reject(batch);
+            }
+            batch = queue.peek(batchSize);
+        }
+        return delivered;
+    }
+}
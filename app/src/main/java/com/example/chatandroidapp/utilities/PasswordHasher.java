@@ -0,0 +1,125 @@
+package com.example.chatandroidapp.utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * PasswordHasher derives salted, deliberately slow password hashes with PBKDF2-HMAC-SHA256.
+ * The derivation is written against {@link Mac} directly, because the matching SecretKeyFactory
+ * is only available from API 26 while the application supports API 24.
+ * Hashing takes a noticeable time by design, so it must never run on the main thread.
+ */
+public class PasswordHasher {
+
+    /**
+     * Number of PBKDF2 iterations used for new hashes. Stored next to each hash so it can be raised later.
+     */
+    public static final int ITERATIONS = 120_000;
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32; // One HMAC-SHA256 block
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * @return A new random salt, hex-encoded.
+     */
+    public static String newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return toHex(salt);
+    }
+
+    /**
+     * Hashes a password.
+     *
+     * @param password   The password to hash.
+     * @param salt       The hex-encoded salt.
+     * @param iterations The number of PBKDF2 iterations.
+     * @return The hex-encoded hash.
+     */
+    public static String hash(String password, String salt, int iterations) {
+        return toHex(pbkdf2(password, fromHex(salt), iterations));
+    }
+
+    /**
+     * Checks a password against a stored hash, in time independent of where they differ.
+     *
+     * @param password   The password to check.
+     * @param salt       The hex-encoded salt stored with the hash.
+     * @param hash       The hex-encoded stored hash.
+     * @param iterations The number of iterations stored with the hash.
+     * @return true if the password matches.
+     */
+    public static boolean verify(String password, String salt, String hash, int iterations) {
+        byte[] expected = fromHex(hash);
+        byte[] actual = pbkdf2(password, fromHex(salt), iterations);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Digests a password with a single unsalted SHA-256, fast enough for the main thread.
+     * Only meant to tell attempts apart in memory without keeping the password itself; never store it.
+     *
+     * @param password The password to digest.
+     * @return The hex-encoded digest.
+     */
+    public static String digest(String password) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the first block of PBKDF2-HMAC-SHA256 (RFC 8018), which is the whole 32-byte key.
+     */
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(password.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+
+            // U1 = PRF(password, salt || INT(1))
+            mac.update(salt);
+            mac.update(new byte[]{0, 0, 0, 1});
+            byte[] u = mac.doFinal();
+            byte[] result = u.clone();
+
+            // Uj = PRF(password, Uj-1), result = U1 ^ U2 ^ ... ^ Uc
+            for (int i = 1; i < iterations; i++) {
+                u = mac.doFinal(u);
+                for (int j = 0; j < HASH_BYTES; j++) {
+                    result[j] ^= u[j];
+                }
+            }
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -3,14 +3,27 @@ package com.example.chatandroidapp.utilities;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 /**
  * PreferenceManager is a utility class that provides methods to interact with SharedPreferences.
  * It allows storing and retrieving key-value pairs, as well as clearing all stored preferences.
+ * Reads are served from an immutable in-memory snapshot shared by every instance, which is loaded
+ * in the background when the process starts. Several writes can be grouped with {@link #edit()}
+ * so that they reach the snapshot at once and the disk in a single commit.
  *
  * @author  Daniel Tongu
  */
 public class PreferenceManager {
 
+    private static final Object LOCK = new Object(); // Serializes snapshot replacements
+    private static volatile Map<String, Object> snapshot; // Null until the preferences file is loaded
+
     // SharedPreferences instance to store and retrieve preferences
     private final SharedPreferences sharedPreferences;
 
@@ -22,15 +35,44 @@ public class PreferenceManager {
         sharedPreferences = context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
     }
 
+    /**
+     * Loads the snapshot on the disk executor, so that later reads on the main thread find it in memory.
+     * Meant to be called once when the process starts.
+     *
+     * @param context Any context.
+     * @return The load, done once the snapshot is in memory.
+     */
+    public static Future<?> preload(Context context) {
+        PreferenceManager preferenceManager = new PreferenceManager(context.getApplicationContext());
+        return AppExecutors.diskIO().submit(preferenceManager::snapshot);
+    }
+
+    /**
+     * Drops the snapshot, so that the next read or preload loads it again.
+     */
+    @VisibleForTesting
+    public static void resetForTesting() {
+        synchronized (LOCK) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Starts a batch of writes. Nothing is visible until {@link Editor#apply()} is called.
+     *
+     * @return A new Editor.
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
     /**
      * Saves a boolean value in SharedPreferences.
      * @param key   The key under which the value is saved.
      * @param value The boolean value to save.
      */
     public void putBoolean(String key, Boolean value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(key, value);
-        editor.apply(); // Save the changes
+        edit().putBoolean(key, value).apply();
     }
 
     /**
@@ -40,7 +82,8 @@ public class PreferenceManager {
      * @return The boolean value associated with the key, or false if not found.
      */
     public Boolean getBoolean(String key) {
-        return sharedPreferences.getBoolean(key, false);
+        Object value = snapshot().get(key);
+        return value instanceof Boolean ? (Boolean) value : false;
     }
 
     /**
@@ -49,9 +92,7 @@ public class PreferenceManager {
      * @param value The string value to save.
      */
     public void putString(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        editor.apply(); // Save the changes
+        edit().putString(key, value).apply();
     }
 
     /**
@@ -60,15 +101,114 @@ public class PreferenceManager {
      * @return The string value associated with the key, or null if not found.
      */
     public String getString(String key) {
-        return sharedPreferences.getString(key, null);
+        Object value = snapshot().get(key);
+        return value instanceof String ? (String) value : null;
     }
 
     /**
      * Clears all values from SharedPreferences.
      */
     public void clear() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear();
-        editor.apply(); // Save the changes
+        edit().clear().apply();
+    }
+
+    /**
+     * Returns the current snapshot, loading it first if the preload has not finished yet.
+     */
+    private Map<String, Object> snapshot() {
+        Map<String, Object> current = snapshot;
+        if (current == null) {
+            synchronized (LOCK) {
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableMap(new HashMap<>(sharedPreferences.getAll()));
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Editor collects writes and applies them together: the snapshot is replaced once,
+     * and a single SharedPreferences commit is queued to disk.
+     */
+    public class Editor {
+        private final Map<String, Object> changes = new HashMap<>(); // A null value removes the key
+        private boolean clear; // True if existing values are dropped before the changes apply
+
+        private Editor() {
+        }
+
+        /**
+         * @param key   The key under which the value is saved.
+         * @param value The boolean value to save.
+         * @return This Editor.
+         */
+        public Editor putBoolean(String key, Boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        /**
+         * @param key   The key under which the value is saved.
+         * @param value The string value to save, or null to remove the key.
+         * @return This Editor.
+         */
+        public Editor putString(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        /**
+         * @param key The key to remove.
+         * @return This Editor.
+         */
+        public Editor remove(String key) {
+            changes.put(key, null);
+            return this;
+        }
+
+        /**
+         * Removes every existing value. As with SharedPreferences, the clear happens first when the batch
+         * is applied, so every other change of the batch still applies, made before or after this call.
+         * @return This Editor.
+         */
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        /**
+         * Publishes the changes to the snapshot and queues them to disk in one commit.
+         */
+        public void apply() {
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            if (clear) {
+                editor.clear();
+            }
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                Object value = change.getValue();
+                if (value == null) {
+                    editor.remove(change.getKey());
+                } else if (value instanceof Boolean) {
+                    editor.putBoolean(change.getKey(), (Boolean) value);
+                } else {
+                    editor.putString(change.getKey(), (String) value);
+                }
+            }
+
+            synchronized (LOCK) {
+                Map<String, Object> next = clear ? new HashMap<>() : new HashMap<>(snapshot());
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    if (change.getValue() == null) {
+                        next.remove(change.getKey());
+                    } else {
+                        next.put(change.getKey(), change.getValue());
+                    }
+                }
+                snapshot = Collections.unmodifiableMap(next);
+                editor.apply(); // Queued under the lock, so disk commits keep the snapshot order
+            }
+        }
     }
-}
\ No newline at end of file
+}
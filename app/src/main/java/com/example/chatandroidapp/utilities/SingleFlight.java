@@ -0,0 +1,115 @@
+package com.example.chatandroidapp.utilities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SingleFlight collapses identical concurrent operations into one.
+ * While an operation is in flight under a key, running the same key again does not start it again:
+ * the caller is only added to the callbacks notified when the first one completes. Once it completes,
+ * the key is free and the next run starts a new operation.
+ * It has no Android dependency, so that it can be tested on the JVM.
+ *
+ * @param <T> The type of the result of the operations.
+ */
+public class SingleFlight<T> {
+
+    /**
+     * Notified when an operation completes.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Callback<T> {
+        /**
+         * @param result    The result, or null if the operation failed.
+         * @param exception The failure, or null if the operation succeeded.
+         */
+        void onComplete(T result, Exception exception);
+    }
+
+    /**
+     * An asynchronous operation, which must call its callback exactly once.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Operation<T> {
+        /**
+         * @param callback To call when the operation completes, from any thread.
+         */
+        void start(Callback<T> callback);
+    }
+
+    /**
+     * A caller's interest in an operation.
+     */
+    public interface Subscription {
+        /**
+         * Stops notifying the caller, for example when its Activity is destroyed.
+         * The operation itself carries on for the other callers.
+         */
+        void cancel();
+    }
+
+    private final Map<String, List<Callback<T>>> inFlight = new HashMap<>(); // Callbacks waiting, by key
+
+    /**
+     * Starts an operation, or joins the one already in flight under the same key.
+     *
+     * @param key       Identifies the operation; runs with equal keys are collapsed.
+     * @param operation The operation, only started if none is in flight under the key.
+     * @param callback  Notified when the operation completes, on the thread completing it.
+     * @return The subscription of the callback.
+     */
+    public Subscription run(String key, Operation<T> operation, Callback<T> callback) {
+        List<Callback<T>> flight;
+        boolean isFirst;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            isFirst = flight == null;
+            if (isFirst) {
+                flight = new ArrayList<>();
+                inFlight.put(key, flight);
+            }
+            flight.add(callback);
+        }
+
+        if (isFirst) {
+            List<Callback<T>> started = flight;
+            try {
+                operation.start((result, exception) -> complete(key, started, result, exception));
+            } catch (RuntimeException e) {
+                complete(key, started, null, e);
+            }
+        }
+        List<Callback<T>> joined = flight;
+        return () -> {
+            synchronized (SingleFlight.this) {
+                joined.remove(callback);
+            }
+        };
+    }
+
+    /**
+     * @param key The key of an operation.
+     * @return True if an operation is in flight under the key.
+     */
+    public synchronized boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    private void complete(String key, List<Callback<T>> flight, T result, Exception exception) {
+        List<Callback<T>> callbacks;
+        synchronized (this) {
+            if (inFlight.get(key) != flight) {
+                return; // Already completed, possibly followed by a new operation under the same key
+            }
+            inFlight.remove(key);
+            callbacks = new ArrayList<>(flight);
+        }
+        for (Callback<T> callback : callbacks) {
+            callback.onComplete(result, exception);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.chatandroidapp.utilities;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TaskTracer times the Firestore and FCM calls of the app. Each traced Task shows as an async section
+ * named after its operation in system traces, and its duration, outcome and result size are added to
+ * the statistics of the operation. {@link #dump()} logs their percentiles, so that the operations that
+ * dominate perceived latency stand out. A {@link Listener} may also be told about the results, to account
+ * for the documents they cost.
+ */
+public class TaskTracer {
+
+    private static final String TAG = "TaskTracer";
+    private static final String SECTION_PREFIX = "Task:"; // Tells the sections of the tracer apart in a trace
+
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>(); // By operation name
+    private static final AtomicInteger COOKIES = new AtomicInteger(); // Pairs the ends of overlapping sections
+
+    private static volatile Listener listener; // Told about the results, to account for their cost
+
+    /**
+     * Statistics of one operation.
+     */
+    private static class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong cancellations = new AtomicLong();
+        final AtomicLong results = new AtomicLong(); // Documents returned, summed over the calls
+    }
+
+    /**
+     * Told about every successful traced call and every snapshot of a traced listener.
+     * Called on the thread completing the Task or delivering the snapshot, so it must return quickly.
+     */
+    public interface Listener {
+
+        /**
+         * @param operation The name of the operation.
+         * @param result    The result of the call, possibly null.
+         * @param writes    The number of documents the call wrote.
+         */
+        void onTaskCompleted(String operation, Object result, long writes);
+
+        /**
+         * @param operation The name of the listener.
+         * @param snapshot  The snapshot delivered.
+         */
+        void onSnapshot(String operation, QuerySnapshot snapshot);
+    }
+
+    private TaskTracer() {
+    }
+
+    /**
+     * @param listener The listener told about traced calls and snapshots, or null for none.
+     */
+    public static void setListener(Listener listener) {
+        TaskTracer.listener = listener;
+    }
+
+    /**
+     * Traces a Task that writes no document. See {@link #trace(String, Task, long)}.
+     */
+    public static <T> Task<T> trace(String operation, Task<T> task) {
+        return trace(operation, task, 0);
+    }
+
+    /**
+     * Traces a Task from now until it completes. Must be called right after the call starting the Task.
+     *
+     * @param operation The name of the operation, grouping the calls in the statistics and the traces.
+     * @param task      The Task of the call.
+     * @param writes    The number of documents the call writes if it succeeds.
+     * @param <T>       The type of the result.
+     * @return The same Task, to chain on.
+     */
+    public static <T> Task<T> trace(String operation, Task<T> task, long writes) {
+        long start = SystemClock.elapsedRealtime();
+        int cookie = COOKIES.incrementAndGet();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(SECTION_PREFIX + operation, cookie);
+        }
+
+        // Runs on the thread completing the Task: recording is cheap and must not wait for the main thread
+        task.addOnCompleteListener(Runnable::run, completed -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(SECTION_PREFIX + operation, cookie);
+            }
+            Stats stats = STATS.computeIfAbsent(operation, name -> new Stats());
+            stats.latency.record(SystemClock.elapsedRealtime() - start);
+            if (completed.isCanceled()) {
+                stats.cancellations.incrementAndGet();
+            } else if (!completed.isSuccessful()) {
+                stats.failures.incrementAndGet();
+            } else {
+                stats.results.addAndGet(sizeOf(completed.getResult()));
+                Listener current = listener;
+                if (current != null) {
+                    current.onTaskCompleted(operation, completed.getResult(), writes);
+                }
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Passes a snapshot of a listener on to the {@link Listener}. Must be called from the snapshot listener.
+     *
+     * @param operation The name of the listener.
+     * @param snapshot  The snapshot delivered, possibly null on errors.
+     */
+    public static void traceSnapshot(String operation, QuerySnapshot snapshot) {
+        Listener current = listener;
+        if (current != null && snapshot != null) {
+            current.onSnapshot(operation, snapshot);
+        }
+    }
+
+    /**
+     * Logs the count, failures, latency percentiles and mean result size of every operation traced so far.
+     */
+    public static void dump() {
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(STATS).entrySet()) {
+            Stats stats = entry.getValue();
+            long count = stats.latency.getCount();
+            long successes = count - stats.failures.get() - stats.cancellations.get();
+            Log.i(TAG, entry.getKey()
+                    + " count=" + count
+                    + " failures=" + stats.failures.get()
+                    + " cancellations=" + stats.cancellations.get()
+                    + " p50=" + stats.latency.getPercentile(50) + "ms"
+                    + " p95=" + stats.latency.getPercentile(95) + "ms"
+                    + " p99=" + stats.latency.getPercentile(99) + "ms"
+                    + " max=" + stats.latency.getMax() + "ms"
+                    + " results/success=" + (successes > 0 ? stats.results.get() / successes : 0));
+        }
+    }
+
+    /**
+     * @return The number of documents in a result, 1 for any other non-null result.
+     */
+    private static long sizeOf(Object result) {
+        if (result instanceof QuerySnapshot) {
+            return ((QuerySnapshot) result).size();
+        } else if (result instanceof DocumentSnapshot) {
+            return ((DocumentSnapshot) result).exists() ? 1 : 0;
+        } else if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        return result != null ? 1 : 0;
+    }
+}
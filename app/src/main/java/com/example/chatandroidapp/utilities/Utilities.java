@@ -118,30 +118,5 @@ public class Utilities {
      */
     public static boolean isValidEmail(String email) {
         return android.util.Patterns.EMAIL_ADDRESS.matcher(email).matches();
-    }
-
-    /**
-     * Encodes a Bitmap image to a Base64 string after resizing and compressing it.
-     *
-     * @param bitmap The Bitmap image to encode.
-     * @return A Base64 encoded string representation of the image.
-     */
-    public static String encodeImage(android.graphics.Bitmap bitmap) {
-        // Define the desired width for the preview image
-        int previewWidth = 150;
-        // Calculate the height to maintain the aspect ratio
-        int previewHeight = bitmap.getHeight() * previewWidth / bitmap.getWidth();
-
-        // Create a scaled bitmap for the preview
-        android.graphics.Bitmap previewBitmap = android.graphics.Bitmap.createScaledBitmap(bitmap, previewWidth, previewHeight, false);
-        java.io.ByteArrayOutputStream byteArrayOutputStream = new java.io.ByteArrayOutputStream();
-
-        // Compress the bitmap into JPEG format with 50% quality
-        previewBitmap.compress(android.graphics.Bitmap.CompressFormat.JPEG, 50, byteArrayOutputStream);
-        byte[] bytes = byteArrayOutputStream.toByteArray();
-
-        // Encode the byte array into a Base64 string
-        return android.util.Base64.encodeToString(bytes, android.util.Base64.DEFAULT);
-    }
-
-}
\ No newline at end of file
+    }}
+}
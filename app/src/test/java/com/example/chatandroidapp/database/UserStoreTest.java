@@ -0,0 +1,37 @@
+package com.example.chatandroidapp.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the query building of {@link UserStore}.
+ */
+public class UserStoreTest {
+
+    @Test
+    public void escapeLike_escapesWildcards() {
+        assertEquals("50\\% off\\_now", UserStore.escapeLike("50% off_now"));
+    }
+
+    @Test
+    public void escapeLike_escapesEscapeCharacterFirst() {
+        assertEquals("a\\\\\\%", UserStore.escapeLike("a\\%"));
+    }
+
+    @Test
+    public void escapeLike_keepsPlainText() {
+        assertEquals("Jo Do", UserStore.escapeLike("Jo Do"));
+    }
+
+    @Test
+    public void toMatchExpression_matchesEveryWordAsPrefix() {
+        assertEquals("jo* do*", UserStore.toMatchExpression("Jo Do"));
+    }
+
+    @Test
+    public void toMatchExpression_dropsFtsSyntax() {
+        assertEquals("a* or* b*", UserStore.toMatchExpression("\"a\" OR-b*")); // Lowercase, so never an operator
+        assertEquals("", UserStore.toMatchExpression(" %_ "));
+    }
+}
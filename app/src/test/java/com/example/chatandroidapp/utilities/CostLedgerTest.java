@@ -0,0 +1,67 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CostLedger}.
+ */
+public class CostLedgerTest {
+
+    private CostLedger ledger;
+
+    @Before
+    public void setUp() {
+        ledger = new CostLedger(Collections.singletonMap("UserActivity", 200L));
+        ledger.startVisit("UserActivity");
+    }
+
+    @Test
+    public void readsWithinBudget_doNotOverrun() {
+        assertNull(ledger.addReads("UserActivity", "directory.load", 32));
+        assertNull(ledger.addReads("UserActivity", "users.catchUp", 168));
+
+        assertEquals(200, ledger.getVisitReads("UserActivity"));
+    }
+
+    @Test
+    public void directoryReadOneDocumentPerUser_overrunsOnce() {
+        CostLedger.Overrun overrun = null;
+        int overruns = 0;
+        for (int page = 0; page < 5; page++) {
+            CostLedger.Overrun pageOverrun = ledger.addReads("UserActivity", "users.catchUp", 200);
+            if (pageOverrun != null) {
+                overrun = pageOverrun;
+                overruns++;
+            }
+        }
+
+        assertEquals(1, overruns);
+        assertEquals("UserActivity", overrun.screen);
+        assertEquals("users.catchUp", overrun.operation);
+        assertEquals(400, overrun.reads);
+        assertEquals(200, overrun.budget);
+    }
+
+    @Test
+    public void newVisit_countsFromZeroAndCanOverrunAgain() {
+        assertNotNull(ledger.addReads("UserActivity", "users.catchUp", 201));
+
+        ledger.startVisit("UserActivity");
+
+        assertEquals(0, ledger.getVisitReads("UserActivity"));
+        assertNotNull(ledger.addReads("UserActivity", "users.catchUp", 201));
+    }
+
+    @Test
+    public void screenWithoutBudget_neverOverruns() {
+        ledger.startVisit("ChatActivity");
+
+        assertNull(ledger.addReads("ChatActivity", "messages.loadOlder", 10_000));
+        assertEquals(10_000, ledger.getVisitReads("ChatActivity"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the sizing decisions of {@link ImageImporter}.
+ */
+public class ImageImporterTest {
+
+    private static final int BYTES_PER_PIXEL = 4; // ARGB_8888
+
+    @Test
+    public void sampleSize_keepsTheLongestEdgeAtLeastTheTarget() {
+        int[][] sizes = {{8000, 6000}, {6000, 8000}, {4032, 3024}, {1920, 1080}, {1281, 720}, {2560, 2560}};
+        for (int[] size : sizes) {
+            int sampleSize = ImageImporter.sampleSizeFor(size[0], size[1], Constants.AVATAR_FULL_PIXELS);
+            int longestEdge = Math.max(size[0], size[1]) / sampleSize;
+            assertTrue(longestEdge >= Constants.AVATAR_FULL_PIXELS);
+            assertTrue("Could subsample " + size[0] + "x" + size[1] + " further",
+                    longestEdge / 2 < Constants.AVATAR_FULL_PIXELS);
+        }
+    }
+
+    @Test
+    public void sampleSize_of48MegapixelPhoto_decodesUnder16Megabytes() {
+        int width = 8000;
+        int height = 6000;
+
+        int sampleSize = ImageImporter.sampleSizeFor(width, height, Constants.AVATAR_FULL_PIXELS);
+        long decodedBytes = (long) (width / sampleSize) * (height / sampleSize) * BYTES_PER_PIXEL;
+
+        assertEquals(4, sampleSize);
+        assertTrue(decodedBytes < 16L * 1024 * 1024);
+        assertTrue(decodedBytes * 16 <= (long) width * height * BYTES_PER_PIXEL);
+    }
+
+    @Test
+    public void sampleSize_ofSmallImage_isOne() {
+        assertEquals(1, ImageImporter.sampleSizeFor(640, 480, Constants.AVATAR_FULL_PIXELS));
+        assertEquals(1, ImageImporter.sampleSizeFor(1280, 720, Constants.AVATAR_FULL_PIXELS));
+    }
+
+    @Test
+    public void scale_bringsTheLongestEdgeToTheTarget() {
+        assertEquals(128f, 2000 * ImageImporter.scaleFor(2000, 1500, Constants.AVATAR_THUMBNAIL_PIXELS), 0.01f);
+        assertEquals(512f, 2000 * ImageImporter.scaleFor(1500, 2000, Constants.AVATAR_PROFILE_PIXELS), 0.01f);
+    }
+
+    @Test
+    public void scale_neverEnlarges() {
+        assertEquals(1f, ImageImporter.scaleFor(100, 80, Constants.AVATAR_PROFILE_PIXELS), 0f);
+    }
+}
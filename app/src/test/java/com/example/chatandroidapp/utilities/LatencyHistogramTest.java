@@ -0,0 +1,71 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void percentiles_stayWithinTheBucketRatio() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertWithin(500, histogram.getPercentile(50));
+        assertWithin(950, histogram.getPercentile(95));
+        assertWithin(990, histogram.getPercentile(99));
+        assertEquals(1000, histogram.getPercentile(100));
+        assertEquals(1000, histogram.getMax());
+    }
+
+    @Test
+    public void slowTail_showsInTheHighPercentilesOnly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(20);
+        }
+        histogram.record(3_000);
+        histogram.record(3_000);
+
+        assertWithin(20, histogram.getPercentile(50));
+        assertWithin(20, histogram.getPercentile(95));
+        assertWithin(3_000, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void durationsBeyondTheLastBound_areCappedToTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10 * 60_000);
+
+        assertEquals(10 * 60_000, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void negativeDuration_countsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(1, histogram.getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= Math.ceil(expected * 1.25));
+    }
+}
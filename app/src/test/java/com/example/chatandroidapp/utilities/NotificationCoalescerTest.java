@@ -0,0 +1,174 @@
+package com.example.chatandroidapp.utilities;
+
+import com.example.chatandroidapp.module.ChatMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NotificationCoalescer}, replaying synthetic bursts of pushes on a fake clock.
+ */
+public class NotificationCoalescerTest {
+
+    private static final int MAX_PER_SECOND = 2;
+    private static final int MAX_LINES = 5;
+
+    private FakeScheduler scheduler;
+    private List<String> posts; // Conversation of every post, in order
+    private Map<String, Integer> lastUnreadCounts; // Unread count of the latest post of each conversation
+    private Map<String, List<ChatMessage>> lastLines; // Lines of the latest post of each conversation
+    private NotificationCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        posts = new ArrayList<>();
+        lastUnreadCounts = new HashMap<>();
+        lastLines = new HashMap<>();
+        coalescer = new NotificationCoalescer((conversationId, lines, unreadCount) -> {
+            scheduler.postTimes.add(scheduler.now);
+            posts.add(conversationId);
+            lastUnreadCounts.put(conversationId, unreadCount);
+            lastLines.put(conversationId, lines);
+        }, scheduler, MAX_PER_SECOND, MAX_LINES);
+    }
+
+    @Test
+    public void singleMessage_isPostedImmediately() {
+        coalescer.add(Collections.singletonList(message("a", 0)));
+
+        assertEquals(Collections.singletonList("a"), posts);
+        assertEquals(1, (int) lastUnreadCounts.get("a"));
+    }
+
+    @Test
+    public void burst_postsAtTheCappedRateAndEndsUpToDate() {
+        int conversations = 4;
+        int pushes = 600;
+        long burstMillis = 3000;
+
+        // One push every 5 ms, handed over in batches of 3 as the ingestor would flush them
+        List<ChatMessage> batch = new ArrayList<>();
+        for (int i = 0; i < pushes; i++) {
+            scheduler.advanceTo(i * burstMillis / pushes);
+            batch.add(message("c" + (i % conversations), i));
+            if (batch.size() == 3) {
+                coalescer.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        coalescer.add(batch);
+        scheduler.advanceTo(burstMillis + 10_000);
+
+        // At most MAX_PER_SECOND posts per second, plus the first one and the drain of the last updates
+        assertTrue("Posted " + posts.size() + " times", posts.size() <= burstMillis / 1000 * MAX_PER_SECOND + 1 + conversations);
+        assertTrue(posts.size() < pushes / 10);
+
+        // The last post of every conversation counts every message and shows the latest ones
+        for (int c = 0; c < conversations; c++) {
+            String conversationId = "c" + c;
+            assertEquals(pushes / conversations, (int) lastUnreadCounts.get(conversationId));
+            List<ChatMessage> lines = lastLines.get(conversationId);
+            assertEquals(MAX_LINES, lines.size());
+            assertEquals(pushes - conversations + c, lines.get(MAX_LINES - 1).timestamp);
+        }
+    }
+
+    @Test
+    public void posts_areSpacedByTheInterval() {
+        for (int i = 0; i < 50; i++) {
+            scheduler.advanceTo(i);
+            coalescer.add(Collections.singletonList(message("c" + (i % 5), i)));
+        }
+        scheduler.advanceTo(10_000);
+
+        for (int i = 1; i < scheduler.postTimes.size(); i++) {
+            assertTrue(scheduler.postTimes.get(i) - scheduler.postTimes.get(i - 1) >= 1000 / MAX_PER_SECOND);
+        }
+        // One post right away, then one per interval for the five conversations left waiting
+        assertEquals(6, posts.size());
+    }
+
+    @Test
+    public void clear_dropsPendingUpdatesAndResetsTheCount() {
+        coalescer.add(Collections.singletonList(message("a", 0)));
+        coalescer.add(Collections.singletonList(message("a", 1)));
+        coalescer.clear("a");
+        scheduler.advanceTo(10_000);
+        assertEquals(1, posts.size());
+
+        coalescer.add(Collections.singletonList(message("a", 2)));
+        assertEquals(2, posts.size());
+        assertEquals(1, (int) lastUnreadCounts.get("a"));
+    }
+
+    @Test
+    public void clearAll_dropsPendingUpdatesOfEveryConversation() {
+        coalescer.add(Arrays.asList(message("a", 0), message("b", 0), message("c", 0)));
+        coalescer.clearAll();
+        scheduler.advanceTo(10_000);
+        assertEquals(Collections.singletonList("a"), posts);
+
+        coalescer.add(Collections.singletonList(message("b", 1)));
+        assertEquals(Arrays.asList("a", "b"), posts);
+        assertEquals(1, (int) lastUnreadCounts.get("b"));
+    }
+
+    private static ChatMessage message(String conversationId, long timestamp) {
+        ChatMessage message = new ChatMessage();
+        message.id = conversationId + "-" + timestamp;
+        message.conversationId = conversationId;
+        message.senderName = "Sender";
+        message.text = "Message " + timestamp;
+        message.timestamp = timestamp;
+        return message;
+    }
+
+    /**
+     * Scheduler on a manual clock, running due tasks as time is advanced.
+     */
+    private static class FakeScheduler implements NotificationCoalescer.Scheduler {
+        private final PriorityQueue<Task> due = new PriorityQueue<>((a, b) -> Long.compare(a.time, b.time));
+        private final List<Long> postTimes = new ArrayList<>(); // Time of every post, in order
+        private long now;
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            due.add(new Task(now + delayMillis, task));
+        }
+
+        void advanceTo(long time) {
+            while (!due.isEmpty() && due.peek().time <= time) {
+                Task next = due.poll();
+                now = next.time;
+                next.runnable.run();
+            }
+            now = time;
+        }
+    }
+
+    private static class Task {
+        final long time;
+        final Runnable runnable;
+
+        Task(long time, Runnable runnable) {
+            this.time = time;
+            this.runnable = runnable;
+        }
+    }
+}
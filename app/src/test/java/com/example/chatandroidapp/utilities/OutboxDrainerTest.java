@@ -0,0 +1,181 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link OutboxDrainer}, draining a queue of a thousand messages into a fake store
+ * keyed by message ID, as Firestore documents are.
+ */
+public class OutboxDrainerTest {
+
+    private static final int QUEUED = 1000;
+    private static final int BATCH_SIZE = 50;
+
+    private FakeQueue queue;
+    private Set<String> store; // IDs of the written messages, in the order first written
+    private List<String> written; // Every write, in order, including the ones written again
+    private int commits;
+
+    @Before
+    public void setUp() {
+        queue = new FakeQueue();
+        for (int i = 0; i < QUEUED; i++) {
+            queue.items.add(String.format("%04d", i));
+        }
+        store = new LinkedHashSet<>();
+        written = new ArrayList<>();
+        commits = 0;
+    }
+
+    @Test
+    public void drain_deliversEverythingInOrderInFullBatches() throws Exception {
+        int delivered = OutboxDrainer.drain(queue, this::commit, BATCH_SIZE);
+
+        assertEquals(QUEUED, delivered);
+        assertEquals(QUEUED / BATCH_SIZE, commits);
+        assertTrue(queue.items.isEmpty());
+        assertEquals(expectedOrder(), new ArrayList<>(store));
+    }
+
+    @Test
+    public void drain_lastBatchIsPartial() throws Exception {
+        queue.items.add("tail");
+
+        OutboxDrainer.drain(queue, this::commit, BATCH_SIZE);
+
+        assertEquals(QUEUED / BATCH_SIZE + 1, commits);
+        assertEquals(QUEUED + 1, store.size());
+    }
+
+    @Test
+    public void failedWrite_keepsTheBatchAndTheRestQueued() throws Exception {
+        int failingCommit = 5;
+        try {
+            OutboxDrainer.drain(queue, batch -> {
+                if (commits + 1 == failingCommit) {
+                    commits++;
+                    throw new Exception("Network unavailable");
+                }
+                commit(batch);
+            }, BATCH_SIZE);
+            fail("The failure of the write should be thrown");
+        } catch (Exception expected) {
+            assertEquals("Network unavailable", expected.getMessage());
+        }
+
+        assertEquals((failingCommit - 1) * BATCH_SIZE, store.size());
+        assertEquals(QUEUED - store.size(), queue.items.size());
+        assertEquals(String.format("%04d", store.size()), queue.items.get(0));
+
+        // The retry resumes with the batch that failed
+        OutboxDrainer.drain(queue, this::commit, BATCH_SIZE);
+
+        assertTrue(queue.items.isEmpty());
+        assertEquals(expectedOrder(), new ArrayList<>(store));
+        assertEquals(QUEUED, written.size());
+    }
+
+    @Test
+    public void lostAcknowledgement_isWrittenAgainWithoutDuplicates() throws Exception {
+        int lostCommit = 7;
+        try {
+            OutboxDrainer.drain(queue, batch -> {
+                commit(batch);
+                if (commits == lostCommit) {
+                    // Written, but the process dies before the queue learns about it
+                    throw new Exception("Acknowledgement lost");
+                }
+            }, BATCH_SIZE);
+            fail("The failure of the write should be thrown");
+        } catch (Exception expected) {
+            assertEquals("Acknowledgement lost", expected.getMessage());
+        }
+
+        OutboxDrainer.drain(queue, this::commit, BATCH_SIZE);
+
+        // One batch was written twice, onto the same IDs
+        assertEquals(QUEUED + BATCH_SIZE, written.size());
+        assertEquals(QUEUED, store.size());
+        assertEquals(expectedOrder(), new ArrayList<>(store));
+    }
+
+    @Test
+    public void rejectedHead_isSetAsideAndTheRestDelivered() throws Exception {
+        // The first batch is refused for good, for example by the security rules
+        int delivered = OutboxDrainer.drain(queue, batch -> {
+            if (batch.contains("0000")) {
+                commits++;
+                throw new OutboxDrainer.RejectedException(new Exception("Permission denied"));
+            }
+            commit(batch);
+        }, BATCH_SIZE);
+
+        assertEquals(QUEUED - BATCH_SIZE, delivered);
+        assertTrue(queue.items.isEmpty());
+        assertEquals(expectedOrder().subList(0, BATCH_SIZE), queue.rejected);
+        assertEquals(expectedOrder().subList(BATCH_SIZE, QUEUED), new ArrayList<>(store));
+
+        // A later drain does not write the rejected batch again
+        assertEquals(0, OutboxDrainer.drain(queue, this::commit, BATCH_SIZE));
+        assertEquals(QUEUED - BATCH_SIZE, written.size());
+    }
+
+    @Test
+    public void emptyQueue_writesNothing() throws Exception {
+        queue.items.clear();
+
+        assertEquals(0, OutboxDrainer.drain(queue, this::commit, BATCH_SIZE));
+        assertEquals(0, commits);
+    }
+
+    /**
+     * Writes a batch the way a Firestore write batch of sets would: by ID, overwriting existing documents.
+     */
+    private void commit(List<String> batch) {
+        commits++;
+        for (String id : batch) {
+            written.add(id);
+            store.add(id);
+        }
+    }
+
+    private static List<String> expectedOrder() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < QUEUED; i++) {
+            ids.add(String.format("%04d", i));
+        }
+        return ids;
+    }
+
+    /**
+     * An in-memory queue standing in for the outbox table.
+     */
+    private static class FakeQueue implements OutboxDrainer.Queue<String> {
+        final List<String> items = new ArrayList<>();
+        final List<String> rejected = new ArrayList<>(); // Set aside, in the order rejected
+
+        @Override
+        public List<String> peek(int limit) {
+            return new ArrayList<>(items.subList(0, Math.min(limit, items.size())));
+        }
+
+        @Override
+        public void remove(List<String> delivered) {
+            items.removeAll(delivered);
+        }
+
+        @Override
+        public void reject(List<String> undeliverable) {
+            items.removeAll(undeliverable);
+            rejected.addAll(undeliverable);
+        }
+    }
+}
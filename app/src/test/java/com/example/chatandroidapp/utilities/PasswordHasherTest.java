@@ -0,0 +1,45 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PasswordHasher}.
+ */
+public class PasswordHasherTest {
+
+    // "73616c74" is the hex encoding of "salt", as used by the published PBKDF2-HMAC-SHA256 vectors
+    private static final String SALT = "73616c74";
+
+    @Test
+    public void hash_matchesReferenceVectors() {
+        assertEquals("120fb6cffcf8b32c43e7225256c4f837a86548c92ccc35480805987cb70be17b",
+                PasswordHasher.hash("password", SALT, 1));
+        assertEquals("c5e478d59288c841aa530db6845c4c8d962893a001ce4e11a4963873aa98134a",
+                PasswordHasher.hash("password", SALT, 4096));
+    }
+
+    @Test
+    public void verify_acceptsOnlyTheRightPassword() {
+        String salt = PasswordHasher.newSalt();
+        String hash = PasswordHasher.hash("correct horse", salt, 1000);
+
+        assertTrue(PasswordHasher.verify("correct horse", salt, hash, 1000));
+        assertFalse(PasswordHasher.verify("correct horsf", salt, hash, 1000));
+        assertFalse(PasswordHasher.verify("correct horse", PasswordHasher.newSalt(), hash, 1000));
+        assertFalse(PasswordHasher.verify("correct horse", salt, hash, 999));
+    }
+
+    @Test
+    public void digest_matchesReferenceVector() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", PasswordHasher.digest("abc"));
+        assertNotEquals(PasswordHasher.digest("correct horse"), PasswordHasher.digest("correct horsf"));
+    }
+
+    @Test
+    public void newSalt_isRandom() {
+        assertEquals(32, PasswordHasher.newSalt().length());
+        assertNotEquals(PasswordHasher.newSalt(), PasswordHasher.newSalt());
+    }
+}
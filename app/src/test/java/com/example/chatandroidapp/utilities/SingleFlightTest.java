@@ -0,0 +1,119 @@
+package com.example.chatandroidapp.utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SingleFlight}, with a fake backend whose calls complete on demand.
+ */
+public class SingleFlightTest {
+
+    private static final int TAPS = 20;
+
+    private SingleFlight<String> singleFlight;
+    private List<SingleFlight.Callback<String>> backendCalls; // Pending calls to the fake backend
+    private List<String> results; // Results delivered to the callers, in order
+
+    @Before
+    public void setUp() {
+        singleFlight = new SingleFlight<>();
+        backendCalls = new ArrayList<>();
+        results = new ArrayList<>();
+    }
+
+    @Test
+    public void rapidTaps_makeExactlyOneBackendCall() {
+        for (int i = 0; i < TAPS; i++) {
+            singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+        }
+
+        assertEquals(1, backendCalls.size());
+        assertTrue(results.isEmpty());
+
+        backendCalls.get(0).onComplete("user", null);
+
+        assertEquals(TAPS, results.size());
+        for (String result : results) {
+            assertEquals("user", result);
+        }
+        assertFalse(singleFlight.isInFlight("signIn:a@b.c"));
+    }
+
+    @Test
+    public void completedOperation_isStartedAgainOnTheNextRun() {
+        singleFlight.run("signUp:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+        backendCalls.get(0).onComplete("first", null);
+
+        singleFlight.run("signUp:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+
+        assertEquals(2, backendCalls.size());
+        assertTrue(singleFlight.isInFlight("signUp:a@b.c"));
+    }
+
+    @Test
+    public void differentKeys_runSeparately() {
+        singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+        singleFlight.run("signIn:d@e.f", backendCalls::add, (result, exception) -> results.add(result));
+
+        assertEquals(2, backendCalls.size());
+    }
+
+    @Test
+    public void failure_isDeliveredToEveryCaller() {
+        List<Exception> failures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> failures.add(exception));
+        }
+        Exception exception = new Exception("Offline");
+
+        backendCalls.get(0).onComplete(null, exception);
+
+        assertEquals(3, failures.size());
+        for (Exception failure : failures) {
+            assertSame(exception, failure);
+        }
+    }
+
+    @Test
+    public void cancelledCaller_isNotNotified() {
+        SingleFlight.Subscription destroyed = singleFlight.run("signIn:a@b.c", backendCalls::add,
+                (result, exception) -> results.add("destroyed " + result));
+        singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+
+        destroyed.cancel();
+        backendCalls.get(0).onComplete("user", null);
+
+        assertEquals(1, backendCalls.size());
+        assertEquals(1, results.size());
+        assertEquals("user", results.get(0));
+    }
+
+    @Test
+    public void lateSecondCompletion_doesNotCompleteTheNextOperation() {
+        singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+        SingleFlight.Callback<String> first = backendCalls.get(0);
+        first.onComplete("first", null);
+        singleFlight.run("signIn:a@b.c", backendCalls::add, (result, exception) -> results.add(result));
+
+        first.onComplete("again", null);
+
+        assertTrue(singleFlight.isInFlight("signIn:a@b.c"));
+        assertEquals(1, results.size());
+    }
+
+    @Test
+    public void operationThrowing_failsTheCallersAndFreesTheKey() {
+        List<Exception> failures = new ArrayList<>();
+        singleFlight.run("signIn:a@b.c", callback -> {
+            throw new IllegalStateException("No network stack");
+        }, (result, exception) -> failures.add(exception));
+
+        assertEquals(1, failures.size());
+        assertFalse(singleFlight.isInFlight("signIn:a@b.c"));
+    }
+}
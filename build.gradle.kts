@@ -22,6 +22,12 @@ plugins {
     // 'apply false' means the plugin is available to sub-projects but not applied to the root project.
     alias(libs.plugins.androidApplication) apply false
 
+    // Applies the Android test plugin to the benchmark modules, which instrument the app from a separate APK.
+    alias(libs.plugins.androidTest) apply false
+
+    // Applies the Baseline Profile plugin to the app, which consumes the profile, and to the module generating it.
+    alias(libs.plugins.baselineprofile) apply false
+
     /*
      * Applies the Google Services Gradle plugin, which enables Firebase services.
      * This plugin reads the 'google-services.json' file and configures your app to use Firebase.
@@ -0,0 +1,64 @@
+// build.gradle.kts
+
+/*
+ * This is the build script for the macrobenchmark module.
+ * Its tests drive a release build of the app through the sign-in, main screen and user list journey,
+ * against a local Firestore emulator seeded by the tests. Start the emulator with
+ * firebase emulators:start --only firestore, then, on a physical device or emulator:
+ * - Measure startup and frame timing, with and without the Baseline Profile:
+ *   ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest -PfirestoreEmulatorHost=10.0.2.2 -PfirestoreProjectId=<project ID>
+ *   The results are written as JSON to build/outputs/connected_android_test_additional_output.
+ * - Generate the Baseline Profile of the journey into app/src/release/generated/baselineProfiles:
+ *   ./gradlew :app:generateBaselineProfile -PfirestoreEmulatorHost=10.0.2.2 -PfirestoreProjectId=<project ID>
+ */
+
+plugins {
+    // Applies the Android test plugin: the module is a test APK driving the app from its own process.
+    alias(libs.plugins.androidTest)
+    // Adds the variants of the app that the benchmarks and the profile generation run against.
+    alias(libs.plugins.baselineprofile)
+}
+
+android {
+    // Defines the namespace of the test APK.
+    namespace = "com.example.chatandroidapp.macrobenchmark"
+    // Specifies the SDK version to compile the benchmarks against.
+    compileSdk = 34
+
+    defaultConfig {
+        // Same bounds as the app under test.
+        minSdk = 24
+        targetSdk = 34
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // Where the tests seed the emulator: the same host as the app, and the project ID of google-services.json.
+        testInstrumentationRunnerArguments["firestoreEmulatorHost"] =
+            project.findProperty("firestoreEmulatorHost")?.toString() ?: "10.0.2.2"
+        testInstrumentationRunnerArguments["firestoreProjectId"] =
+            project.findProperty("firestoreProjectId")?.toString() ?: ""
+        // Keeps the results of runs on an emulator, which are only fit to check that the benchmarks work.
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "EMULATOR"
+    }
+
+    // The app under test, installed alongside the test APK.
+    targetProjectPath = ":app"
+    // Runs the tests in the process of the test APK, so that the app can be killed and restarted between iterations.
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+
+    compileOptions {
+        // Sets the Java source and target compatibility to Java 8, as in the app.
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+}
+
+baselineProfile {
+    // Runs on the device or emulator connected to the host, rather than on a Gradle managed device.
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.benchmark.macro.junit4) // MacrobenchmarkRule: startup and frame timing from system traces
+    implementation(libs.uiautomator) // Drives the app through its UI
+    implementation(libs.ext.junit) // AndroidX extensions for JUnit
+}
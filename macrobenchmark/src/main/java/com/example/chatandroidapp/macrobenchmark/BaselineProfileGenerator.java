@@ -0,0 +1,50 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Generates the Baseline Profile of the critical user journey: signing in, loading the main screen,
+ * opening the user list and scrolling it. The classes and methods run are compiled ahead of time on install,
+ * instead of being interpreted and JIT-compiled during the first launches. Run through
+ * {@code ./gradlew :app:generateBaselineProfile}, which copies the result into the app.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    private static final int MAX_ITERATIONS = 15;
+    private static final int STABLE_ITERATIONS = 3; // Stops once this many runs yield the same profile
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Before
+    public void setUp() throws Exception {
+        EmulatorSeed.ensureSeeded();
+    }
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                Journey.PACKAGE,
+                MAX_ITERATIONS,
+                STABLE_ITERATIONS,
+                null,
+                true, // Also a startup profile, which lays out the startup classes first in the DEX files
+                scope -> {
+                    Journey.signIn(scope);
+                    Journey.openUserList(scope);
+                    Journey.flingUserList(scope);
+                    // So that the next iteration goes through the sign-in screen again
+                    Journey.signOut(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.os.Bundle;
+import android.util.Base64;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeds the local Firestore emulator with the account the journey signs in with and a directory of users,
+ * through the REST API of the emulator. Most users have an avatar, a thumbnail of its own per user, so that
+ * scrolling the list fetches and decodes avatars as with real users.
+ */
+final class EmulatorSeed {
+
+    static final String EMAIL = "benchmark@example.com";
+    static final String PASSWORD = "benchmark";
+    static final int USERS = 2_000; // Enough rows for several flings of the user list
+
+    private static final int PORT = 8080; // Default port of the Firestore emulator
+    private static final int SHARD_COUNT = 32; // Same as Constants.DIRECTORY_SHARD_COUNT of the app
+    private static final String ACCOUNT_ID = "benchmarkAccount";
+    private static final int AVATAR_PERCENT = 75; // Share of users with an avatar
+    private static final int AVATAR_PIXELS = 128; // Same as Constants.AVATAR_THUMBNAIL_PIXELS of the app
+    private static final int AVATAR_QUALITY = 80; // Same as Constants.AVATAR_QUALITY of the app
+    private static final int WRITES_PER_COMMIT = 500; // Most writes Firestore accepts in one commit
+
+    private static boolean isSeeded; // Once per test process: the commit upserts the same documents
+
+    private EmulatorSeed() {
+    }
+
+    /**
+     * Writes the seed, unless this process already did.
+     */
+    static synchronized void ensureSeeded() throws IOException, JSONException {
+        if (isSeeded) {
+            return;
+        }
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String host = arguments.getString("firestoreEmulatorHost", "10.0.2.2");
+        String projectId = arguments.getString("firestoreProjectId", "");
+        if (projectId.isEmpty()) {
+            throw new IllegalStateException("Pass the project ID of the app with -PfirestoreProjectId");
+        }
+        String documents = "projects/" + projectId + "/databases/(default)/documents";
+
+        JSONArray writes = new JSONArray();
+        // An account with its password still in the user document, which the legacy sign-in accepts and migrates
+        JSONObject account = new JSONObject()
+                .put("name", string("User Benchmark"))
+                .put("email", string(EMAIL))
+                .put("password", string(PASSWORD));
+        writes.put(upsert(documents + "/Users/" + ACCOUNT_ID, account));
+
+        Map<Integer, JSONObject> shards = new HashMap<>();
+        for (int i = 0; i < USERS; i++) {
+            String userId = String.format(Locale.US, "seed%05d", i);
+            JSONObject entry = new JSONObject()
+                    .put("name", string(String.format(Locale.US, "Seeded User %05d", i)))
+                    .put("email", string(userId + "@example.com"));
+            if (i % 100 < AVATAR_PERCENT) {
+                // The avatar document read by rows, keyed by the content hash as the app stores it
+                byte[] avatar = avatar(i);
+                String imageHash = hashOf(avatar);
+                entry.put("imageHash", string(imageHash));
+                writes.put(upsert(documents + "/Avatars/" + userId, new JSONObject()
+                        .put("image", new JSONObject().put("bytesValue", Base64.encodeToString(avatar, Base64.NO_WRAP)))
+                        .put("imageHash", string(imageHash))));
+            }
+            int shard = Math.floorMod(userId.hashCode(), SHARD_COUNT);
+            if (!shards.containsKey(shard)) {
+                shards.put(shard, new JSONObject());
+            }
+            shards.get(shard).put(userId, new JSONObject().put("mapValue", new JSONObject().put("fields", entry)));
+        }
+        for (Map.Entry<Integer, JSONObject> shard : shards.entrySet()) {
+            JSONObject fields = new JSONObject()
+                    .put("entries", new JSONObject().put("mapValue", new JSONObject().put("fields", shard.getValue())));
+            writes.put(upsert(documents + "/Directory/" + shard.getKey(), fields));
+        }
+
+        URL commit = new URL("http://" + host + ":" + PORT + "/v1/" + documents + ":commit");
+        for (int start = 0; start < writes.length(); start += WRITES_PER_COMMIT) {
+            JSONArray chunk = new JSONArray();
+            for (int i = start; i < Math.min(start + WRITES_PER_COMMIT, writes.length()); i++) {
+                chunk.put(writes.get(i));
+            }
+            post(commit, new JSONObject().put("writes", chunk));
+        }
+        isSeeded = true;
+    }
+
+    /**
+     * @return A write replacing the whole document, or creating it, with a server-side updatedAt.
+     */
+    private static JSONObject upsert(String name, JSONObject fields) throws JSONException {
+        JSONObject updatedAt = new JSONObject().put("fieldPath", "updatedAt").put("setToServerValue", "REQUEST_TIME");
+        return new JSONObject()
+                .put("update", new JSONObject().put("name", name).put("fields", fields))
+                .put("updateTransforms", new JSONArray().put(updatedAt));
+    }
+
+    /**
+     * @return A thumbnail of its own for a user: a gradient of colors picked from its index, with noise, so
+     * that it compresses like a photo.
+     */
+    @SuppressWarnings("deprecation")
+    private static byte[] avatar(int index) {
+        Random random = new Random(index);
+        Bitmap bitmap = Bitmap.createBitmap(AVATAR_PIXELS, AVATAR_PIXELS, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, AVATAR_PIXELS, AVATAR_PIXELS,
+                Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)),
+                Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)), Shader.TileMode.CLAMP));
+        new Canvas(bitmap).drawRect(0, 0, AVATAR_PIXELS, AVATAR_PIXELS, paint);
+        int[] pixels = new int[AVATAR_PIXELS * AVATAR_PIXELS];
+        bitmap.getPixels(pixels, 0, AVATAR_PIXELS, 0, 0, AVATAR_PIXELS, AVATAR_PIXELS);
+        for (int i = 0; i < pixels.length; i++) {
+            int noise = random.nextInt(33) - 16;
+            pixels[i] = Color.rgb(clamp(Color.red(pixels[i]) + noise), clamp(Color.green(pixels[i]) + noise),
+                    clamp(Color.blue(pixels[i]) + noise));
+        }
+        bitmap.setPixels(pixels, 0, AVATAR_PIXELS, 0, 0, AVATAR_PIXELS, AVATAR_PIXELS);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.WEBP, AVATAR_QUALITY, outputStream);
+        bitmap.recycle();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @return The first 8 bytes of the SHA-1 of the bytes, in hex, as AvatarStore.hashOf of the app computes it.
+     */
+    private static String hashOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static JSONObject string(String value) throws JSONException {
+        return new JSONObject().put("stringValue", value);
+    }
+
+    private static void post(URL url, JSONObject body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer owner"); // Bypasses the security rules of the emulator
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Seeding the emulator failed with HTTP " + code + ": " + connection.getResponseMessage());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
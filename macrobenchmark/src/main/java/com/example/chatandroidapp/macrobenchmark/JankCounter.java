@@ -0,0 +1,93 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import android.os.Bundle;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the frames the system reports as janky for the app, per iteration, from {@code dumpsys gfxinfo}.
+ * Complements the frame percentiles of the frame timing metric with a plain count.
+ */
+final class JankCounter {
+
+    private static final Pattern TOTAL_FRAMES = Pattern.compile("Total frames rendered: (\\d+)");
+    private static final Pattern JANKY_FRAMES = Pattern.compile("Janky frames: (\\d+)");
+
+    private final String packageName;
+    private final List<int[]> iterations = new ArrayList<>(); // Total and janky frames of each iteration
+
+    JankCounter(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Starts counting from zero, before an iteration.
+     */
+    void reset(UiDevice device) {
+        try {
+            device.executeShellCommand("dumpsys gfxinfo " + packageName + " reset");
+        } catch (IOException e) {
+            throw new AssertionError("Unable to reset the frame stats", e);
+        }
+    }
+
+    /**
+     * Records the frames counted since the last reset, after an iteration.
+     */
+    void record(UiDevice device) {
+        String stats;
+        try {
+            stats = device.executeShellCommand("dumpsys gfxinfo " + packageName);
+        } catch (IOException e) {
+            throw new AssertionError("Unable to read the frame stats", e);
+        }
+        iterations.add(new int[]{find(TOTAL_FRAMES, stats), find(JANKY_FRAMES, stats)});
+    }
+
+    /**
+     * Writes the counts of every iteration as JSON to the directory collected with the benchmark results.
+     *
+     * @param name The name of the file, without extension.
+     */
+    void write(String name) throws IOException, JSONException {
+        if (iterations.isEmpty()) {
+            return;
+        }
+        JSONArray totalFrames = new JSONArray();
+        JSONArray jankyFrames = new JSONArray();
+        for (int[] iteration : iterations) {
+            totalFrames.put(iteration[0]);
+            jankyFrames.put(iteration[1]);
+        }
+        JSONObject results = new JSONObject()
+                .put("name", name)
+                .put("totalFrames", totalFrames)
+                .put("jankyFrames", jankyFrames);
+
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String directory = arguments.getString("additionalTestOutputDir",
+                InstrumentationRegistry.getInstrumentation().getContext().getExternalFilesDir(null).getPath());
+        try (FileOutputStream outputStream = new FileOutputStream(new File(directory, name + "-jank.json"))) {
+            outputStream.write(results.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int find(Pattern pattern, String stats) {
+        Matcher matcher = pattern.matcher(stats);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
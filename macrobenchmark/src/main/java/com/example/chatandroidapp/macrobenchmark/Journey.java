@@ -0,0 +1,80 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * The steps of the critical user journey, driven through the UI of the app.
+ */
+final class Journey {
+
+    static final String PACKAGE = "com.example.chatandroidapp";
+
+    private static final long SCREEN_TIMEOUT_MILLIS = 5_000;
+    private static final long NETWORK_TIMEOUT_MILLIS = 30_000; // Sign-in hashes the password and reads the emulator
+    private static final int FLINGS = 3;
+
+    private Journey() {
+    }
+
+    /**
+     * Launches the app and signs in with the seeded account, unless a session is already stored.
+     * Ends on the main screen.
+     */
+    static void signIn(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        UiDevice device = scope.getDevice();
+        if (device.wait(Until.hasObject(By.res(PACKAGE, "inputEmail")), SCREEN_TIMEOUT_MILLIS)) {
+            device.findObject(By.res(PACKAGE, "inputEmail")).setText(EmulatorSeed.EMAIL);
+            device.findObject(By.res(PACKAGE, "inputPassword")).setText(EmulatorSeed.PASSWORD);
+            device.findObject(By.res(PACKAGE, "buttonSignIn")).click();
+        }
+        waitFor(device, "fabNewChat", NETWORK_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Opens the user list from the main screen and waits for its first rows.
+     */
+    static void openUserList(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        waitFor(device, "fabNewChat", SCREEN_TIMEOUT_MILLIS).click();
+        waitFor(device, "usersRecyclerView", SCREEN_TIMEOUT_MILLIS);
+        waitFor(device, "textName", NETWORK_TIMEOUT_MILLIS); // The directory may still be loading on a first start
+    }
+
+    /**
+     * Flings the user list down a few times.
+     */
+    static void flingUserList(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = waitFor(device, "usersRecyclerView", SCREEN_TIMEOUT_MILLIS);
+        // Keeps the gesture clear of the system navigation areas
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < FLINGS; i++) {
+            list.fling(Direction.DOWN);
+        }
+        device.waitForIdle();
+    }
+
+    /**
+     * Goes back from the user list to the main screen and signs out. Ends on the sign-in screen.
+     */
+    static void signOut(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        device.pressBack();
+        waitFor(device, "imageSignOut", SCREEN_TIMEOUT_MILLIS).click();
+        waitFor(device, "inputEmail", NETWORK_TIMEOUT_MILLIS);
+    }
+
+    private static UiObject2 waitFor(UiDevice device, String id, long timeoutMillis) {
+        UiObject2 object = device.wait(Until.findObject(By.res(PACKAGE, id)), timeoutMillis);
+        if (object == null) {
+            throw new AssertionError("No " + id + " on screen after " + timeoutMillis + " ms");
+        }
+        return object;
+    }
+}
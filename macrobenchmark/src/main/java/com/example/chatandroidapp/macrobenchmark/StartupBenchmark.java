@@ -0,0 +1,81 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures the start of a signed-in user from the launcher to the main screen, which the launcher activity
+ * forwards to without drawing. Reports the time to initial display, and the time to full display, reported by
+ * the main screen once its first inbox snapshot is bound, without and with the Baseline Profile, so that its
+ * gain shows in the same run.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final StartupMode startupMode;
+    private final CompilationMode compilationMode;
+
+    /**
+     * @return Cold starts, with the process killed, and warm starts, with the activities destroyed,
+     * each as on a fresh install without ahead-of-time compilation and with the Baseline Profile.
+     */
+    @Parameterized.Parameters(name = "{0}_{1}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (StartupMode startupMode : new StartupMode[]{StartupMode.COLD, StartupMode.WARM}) {
+            parameters.add(new Object[]{startupMode, new CompilationMode.None()});
+            parameters.add(new Object[]{startupMode, new CompilationMode.Partial(BaselineProfileMode.Require)});
+        }
+        return parameters;
+    }
+
+    public StartupBenchmark(StartupMode startupMode, CompilationMode compilationMode) {
+        this.startupMode = startupMode;
+        this.compilationMode = compilationMode;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        EmulatorSeed.ensureSeeded();
+    }
+
+    @Test
+    public void startToMainScreen() {
+        benchmarkRule.measureRepeated(
+                Journey.PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    // Stores a session, so that the measured start goes straight to the main screen
+                    Journey.signIn(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chatandroidapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures the frames of flings through the user list, filled from the seeded directory, whose rows mostly
+ * fetch and decode an avatar.
+ * Reports frame duration and overrun percentiles, and the janky frames counted by the system in a JSON file
+ * next to the benchmark results, without and with the Baseline Profile.
+ */
+@RunWith(Parameterized.class)
+public class UserListScrollBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final JankCounter jankCounter = new JankCounter(Journey.PACKAGE);
+    private final CompilationMode compilationMode;
+
+    /**
+     * @return As on a fresh install without ahead-of-time compilation, and with the Baseline Profile.
+     */
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> compilationModes() {
+        return Arrays.asList(new Object[]{new CompilationMode.None()},
+                new Object[]{new CompilationMode.Partial(BaselineProfileMode.Require)});
+    }
+
+    public UserListScrollBenchmark(CompilationMode compilationMode) {
+        this.compilationMode = compilationMode;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        EmulatorSeed.ensureSeeded();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        jankCounter.write("UserListScrollBenchmark_flingUserList_" + compilationMode);
+    }
+
+    @Test
+    public void flingUserList() {
+        benchmarkRule.measureRepeated(
+                Journey.PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                StartupMode.WARM,
+                ITERATIONS,
+                scope -> {
+                    Journey.signIn(scope);
+                    Journey.openUserList(scope);
+                    jankCounter.reset(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journey.flingUserList(scope);
+                    jankCounter.record(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,61 @@
+// build.gradle.kts
+
+/*
+ * This is the build script for the microbenchmark module.
+ * Its tests measure single code paths of the app, in the process of its release build, with Jetpack Benchmark.
+ * Run them with ./gradlew :microbenchmark:connectedBenchmarkAndroidTest on a physical device. Each run writes
+ * its timings and allocation counts as JSON to build/outputs/connected_android_test_additional_output.
+ */
+
+plugins {
+    // Applies the Android test plugin: the module is a test APK instrumenting the app.
+    alias(libs.plugins.androidTest)
+}
+
+android {
+    // Defines the namespace of the test APK.
+    namespace = "com.example.chatandroidapp.microbenchmark"
+    // Specifies the SDK version to compile the benchmarks against.
+    compileSdk = 34
+
+    defaultConfig {
+        // Same bounds as the app under test.
+        minSdk = 24
+        targetSdk = 34
+
+        // Runs the tests with the benchmark runner, which locks clocks where it can and writes the JSON results.
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        // Keeps the results of runs on an emulator, which are only fit to check that the benchmarks work.
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "EMULATOR"
+    }
+
+    buildTypes {
+        // Matches the benchmark build type of the app, which is the APK under test.
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    // The app whose code is measured; its classes are on the compile classpath of the benchmarks.
+    targetProjectPath = ":app"
+
+    compileOptions {
+        // Sets the Java source and target compatibility to Java 8, as in the app.
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+}
+
+// Only the benchmark variant measures a non-debuggable app; the others would report misleading numbers.
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
+
+dependencies {
+    implementation(libs.benchmark.junit4) // BenchmarkRule: warm-up, repeated timing and allocation counting
+    implementation(libs.ext.junit) // AndroidX extensions for JUnit
+}
@@ -0,0 +1,77 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.graphics.Bitmap;
+import android.util.Base64;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.chatandroidapp.utilities.AvatarLoader;
+import com.example.chatandroidapp.utilities.BitmapPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the decode of an avatar for a row of the user list, as done by {@link AvatarLoader}
+ * on its background threads.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AvatarDecodeBenchmark {
+
+    private static final long POOL_BYTES = 4L * 1024 * 1024; // Same as the pool of AvatarLoader
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private byte[] avatar;
+    private String encodedAvatar;
+
+    @Before
+    public void setUp() {
+        avatar = Fixtures.avatar();
+        encodedAvatar = Fixtures.encodedAvatar();
+    }
+
+    /**
+     * An avatar still stored inline as Base64 in a user document created before the Avatars collection.
+     */
+    @Test
+    public void decodeInlineBase64Avatar() {
+        BitmapPool bitmapPool = new BitmapPool(POOL_BYTES);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            byte[] bytes = Base64.decode(encodedAvatar, Base64.DEFAULT);
+            Bitmap bitmap = AvatarLoader.decode(bytes, Fixtures.AVATAR_VIEW_PIXELS, bitmapPool);
+            bitmapPool.put(bitmap); // As when the avatar is evicted from the memory cache
+        }
+    }
+
+    /**
+     * An avatar read from the disk cache or the Avatars collection, decoded into a pooled Bitmap.
+     */
+    @Test
+    public void decodeAvatarIntoPooledBitmap() {
+        BitmapPool bitmapPool = new BitmapPool(POOL_BYTES);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap bitmap = AvatarLoader.decode(avatar, Fixtures.AVATAR_VIEW_PIXELS, bitmapPool);
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * The same decode without a pool, so that the allocation count shows what the pool saves.
+     */
+    @Test
+    public void decodeAvatarWithoutPool() {
+        BitmapPool bitmapPool = new BitmapPool(0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            AvatarLoader.decode(avatar, Fixtures.AVATAR_VIEW_PIXELS, bitmapPool).recycle();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Base64;
+
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic data of the sizes the app handles in practice, generated with a fixed seed so that every run
+ * measures the same input.
+ */
+final class Fixtures {
+
+    static final int USERS_PER_SHARD = 310; // 10,000 users over the directory shards
+    static final int AVATAR_VIEW_PIXELS = 144; // Avatar of a row at 3x density
+
+    private static final int LEGACY_AVATAR_PIXELS = 150; // Width of the inline avatar before the Avatars collection
+    private static final int LEGACY_AVATAR_QUALITY = 50;
+
+    private static final long SEED = 42;
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Amara", "Ana", "Anna", "Carlos", "Chen", "Dennis",
+            "Fatima", "Grace", "Hana", "Ivan", "Jo", "John", "Joanna", "Ken", "Lena", "Linus", "Maria", "Mohammed",
+            "Noah", "Olga", "Priya", "Ravi", "Sofia", "Tomás", "Wei", "Yuki", "Zoe", "Émile"};
+    private static final String[] LAST_NAMES = {"Abiodun", "Dubois", "Garcia", "Hamilton", "Hopper", "Ito", "Khan",
+            "Kowalski", "Li", "Liskov", "Lovelace", "Martin", "Müller", "Nguyen", "Okafor", "Patel", "Ritchie",
+            "Rossi", "Silva", "Smith", "Thompson", "Torvalds", "Turing", "Wang", "Yilmaz"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Photos of the sizes and aspect ratios phone cameras produce, generated as JPEGs with gradients and noise,
+     * which compress like a photo rather than a flat color.
+     */
+    static final Photo[] PHOTOS = {
+            Photo.generated("12mp_4x3", 4032, 3024, ExifInterface.ORIENTATION_NORMAL),
+            // A portrait shot, stored in the orientation of the sensor with an EXIF rotation
+            Photo.generated("12mp_3x4_exifRotated", 4032, 3024, ExifInterface.ORIENTATION_ROTATE_90),
+            Photo.generated("16mp_4x3", 4624, 3468, ExifInterface.ORIENTATION_NORMAL),
+            Photo.generated("8mp_16x9", 3840, 2160, ExifInterface.ORIENTATION_NORMAL),
+            Photo.generated("9mp_1x1", 3024, 3024, ExifInterface.ORIENTATION_NORMAL),
+            Photo.generated("16mp_panorama", 8000, 2000, ExifInterface.ORIENTATION_NORMAL)
+    };
+
+    /**
+     * A photo to import, generated on first use or read from a file as is.
+     */
+    static final class Photo {
+        final String name;
+        private final int width, height, orientation;
+        private final File file; // Null for a generated photo
+
+        private Photo(String name, int width, int height, int orientation, File file) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+            this.file = file;
+        }
+
+        static Photo generated(String name, int width, int height, int orientation) {
+            return new Photo(name, width, height, orientation, null);
+        }
+
+        /**
+         * @param file A photo taken by a camera.
+         */
+        static Photo real(File file) {
+            return new Photo("real_" + file.getName().replaceAll("\\W", "_"), 0, 0, 0, file);
+        }
+
+        /**
+         * Writes a generated photo to a directory, unless a previous run did.
+         *
+         * @param directory The directory to write to.
+         * @return The URI of the photo.
+         */
+        Uri uri(File directory) throws IOException {
+            if (file != null) {
+                return Uri.fromFile(file);
+            }
+            File generated = new File(directory, "photo_" + name + ".jpg");
+            if (!generated.exists()) {
+                Bitmap bitmap = noisyGradient(width, height);
+                try (FileOutputStream outputStream = new FileOutputStream(generated)) {
+                    bitmap.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
+                }
+                bitmap.recycle();
+                if (orientation != ExifInterface.ORIENTATION_NORMAL) {
+                    ExifInterface exif = new ExifInterface(generated.getPath());
+                    exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+                    exif.saveAttributes();
+                }
+            }
+            return Uri.fromFile(generated);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * @return An avatar of the thumbnail size decoded by the rows of lists, compressed as
+     * {@link com.example.chatandroidapp.utilities.ImageImporter} does.
+     */
+    @SuppressWarnings("deprecation")
+    static byte[] avatar() {
+        Bitmap bitmap = noisyGradient(Constants.AVATAR_THUMBNAIL_PIXELS, Constants.AVATAR_THUMBNAIL_PIXELS);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.WEBP, Constants.AVATAR_QUALITY, outputStream);
+        bitmap.recycle();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @return The avatar as stored inline, in user documents and preferences, before the Avatars collection:
+     * a JPEG 150 pixels wide at quality 50, encoded in Base64.
+     */
+    static String encodedAvatar() {
+        Bitmap bitmap = noisyGradient(LEGACY_AVATAR_PIXELS, LEGACY_AVATAR_PIXELS);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, LEGACY_AVATAR_QUALITY, outputStream);
+        bitmap.recycle();
+        return Base64.encodeToString(outputStream.toByteArray(), Base64.DEFAULT);
+    }
+
+    /**
+     * @param count The number of users.
+     * @return Users with realistic names, emails and avatar hashes.
+     */
+    static List<User> users(int count) {
+        Random random = new Random(SEED);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.id = String.format("benchmark%015d", i);
+            // Few distinct names, as in a real directory: searches match many users and ties are common
+            user.name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            user.email = "user" + i + "@example.com";
+            user.imageHash = String.format("%016x", random.nextLong()); // Length of the hashes of AvatarStore
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * @return The entries of one directory shard, as read from Firestore.
+     */
+    static Map<String, Object> shardEntries() {
+        Map<String, Object> entries = new HashMap<>();
+        for (User user : users(USERS_PER_SHARD)) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put(Constants.KEY_NAME, user.name);
+            entry.put(Constants.KEY_EMAIL, user.email);
+            entry.put(Constants.KEY_IMAGE_HASH, user.imageHash);
+            entries.put(user.id, entry);
+        }
+        return entries;
+    }
+
+    private static Bitmap noisyGradient(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, width, height, Color.rgb(30, 90, 160), Color.rgb(230, 180, 90),
+                Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, width, height, paint);
+
+        // Sparse noise over the gradient, row by row to keep the buffer small
+        Random random = new Random(SEED);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y += 2) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(33) - 16;
+                int pixel = row[x];
+                row[x] = Color.rgb(clamp(Color.red(pixel) + noise), clamp(Color.green(pixel) + noise),
+                        clamp(Color.blue(pixel) + noise));
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.utilities.ImageImporter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the import of a picked photo into the avatar sizes, which replaced the full-resolution
+ * decode and Base64 encoding of the sign-up screen, over photos of several sizes and aspect ratios.
+ * Besides the time, the peak memory of a few imports is written next to the results, as
+ * {@code ImageImportBenchmark_<photo>-memory.json}.
+ * Real photos can be added with the {@code photoCorpus} instrumentation argument, a directory readable by
+ * the app such as {@code /data/local/tmp/photos}, whose files are all imported.
+ */
+@RunWith(Parameterized.class)
+public class ImageImportBenchmark {
+
+    private static final String TAG = "ImageImportBenchmark";
+    private static final int MEMORY_RUNS = 3;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Fixtures.Photo photo;
+    private Context context;
+    private Uri uri;
+
+    /**
+     * @return The generated photos, followed by the real ones of the {@code photoCorpus} directory if given.
+     */
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (Fixtures.Photo photo : Fixtures.PHOTOS) {
+            parameters.add(new Object[]{photo});
+        }
+        String corpus = InstrumentationRegistry.getArguments().getString("photoCorpus");
+        File[] files = corpus != null ? new File(corpus).listFiles(File::isFile) : null;
+        if (files != null) {
+            for (File file : files) {
+                parameters.add(new Object[]{Fixtures.Photo.real(file)});
+            }
+        }
+        return parameters;
+    }
+
+    public ImageImportBenchmark(Fixtures.Photo photo) {
+        this.photo = photo;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        uri = photo.uri(context.getCacheDir());
+    }
+
+    @Test
+    public void importPhoto() throws Exception {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ImageImporter.Variants variants = ImageImporter.decode(context.getContentResolver(), uri);
+            variants.preview.recycle();
+        }
+
+        PeakMemory peakMemory = new PeakMemory();
+        for (int i = 0; i < MEMORY_RUNS; i++) {
+            long bytes = peakMemory.measure(() ->
+                    ImageImporter.decode(context.getContentResolver(), uri).preview.recycle());
+            Log.i(TAG, photo.name + " peak memory " + bytes / 1024 + " KiB");
+        }
+        peakMemory.write(TAG + "_" + photo.name);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.chatandroidapp.utilities.PasswordHasher;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures one password verification at the production iteration count, the delay that hashing adds to
+ * signing in, so that changes to {@link PasswordHasher#ITERATIONS} can be weighed against it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PasswordHasherBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private String salt;
+    private String hash;
+
+    @Before
+    public void setUp() {
+        salt = PasswordHasher.newSalt();
+        hash = PasswordHasher.hash(PASSWORD, salt, PasswordHasher.ITERATIONS);
+    }
+
+    @Test
+    public void verifyAtProductionIterations() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            assertTrue(PasswordHasher.verify(PASSWORD, salt, hash, PasswordHasher.ITERATIONS));
+        }
+    }
+}
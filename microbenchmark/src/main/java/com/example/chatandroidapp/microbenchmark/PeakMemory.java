@@ -0,0 +1,97 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the memory in use while a piece of work runs, and records the highest level reached above the one
+ * it started from. Bitmap pixels are on the native heap from API 26 and on the Java heap before, so both heaps
+ * are added up. Sampling happens every millisecond: a peak shorter than that can be missed.
+ */
+final class PeakMemory {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 1;
+
+    /**
+     * Work measured by {@link #measure(Work)}.
+     */
+    interface Work {
+        void run() throws Exception;
+    }
+
+    private final List<Long> peaks = new ArrayList<>(); // Peak bytes above the starting level, per run
+
+    /**
+     * Runs the work once while sampling the memory in use.
+     *
+     * @return The peak, in bytes above the level before the work.
+     */
+    long measure(Work work) throws Exception {
+        Runtime.getRuntime().gc(); // Starts from a settled heap, without the garbage of the previous run
+        long baseline = used();
+        AtomicLong peak = new AtomicLong(baseline);
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (isRunning.get()) {
+                peak.accumulateAndGet(used(), Math::max);
+                SystemClock.sleep(SAMPLE_INTERVAL_MILLIS);
+            }
+        }, "PeakMemory");
+        sampler.start();
+        try {
+            work.run();
+        } finally {
+            isRunning.set(false);
+            sampler.join();
+        }
+        long bytes = peak.accumulateAndGet(used(), Math::max) - baseline;
+        peaks.add(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the peak of every run as JSON to the directory collected with the benchmark results.
+     *
+     * @param name The name of the file, without extension.
+     */
+    void write(String name) throws IOException, JSONException {
+        if (peaks.isEmpty()) {
+            return;
+        }
+        JSONArray peakBytes = new JSONArray();
+        for (long peak : peaks) {
+            peakBytes.put(peak);
+        }
+        JSONObject results = new JSONObject()
+                .put("name", name)
+                .put("peakBytes", peakBytes);
+
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String directory = arguments.getString("additionalTestOutputDir",
+                InstrumentationRegistry.getInstrumentation().getContext().getExternalFilesDir(null).getPath());
+        try (FileOutputStream outputStream = new FileOutputStream(new File(directory, name + "-memory.json"))) {
+            outputStream.write(results.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        return Debug.getNativeHeapAllocatedSize() + runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.utilities.Constants;
+import com.example.chatandroidapp.utilities.PreferenceManager;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the preference writes of a sign-in, one commit per key as before the batch API and one commit
+ * for the whole batch, including the disk writes they queue, and the load of the preferences at process
+ * start, with the avatar inline as before the blob store and without it. The preferences of the app are
+ * used, so their values are saved before and restored after the run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PreferenceManagerBenchmark {
+
+    private static final String USER_NAME = "Ada Lovelace";
+    private static final String IMAGE_HASH = "0123456789abcdef";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static Context context;
+    private static Map<String, ?> saved;
+
+    @BeforeClass
+    public static void setUpClass() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        saved = new HashMap<>(preferences().getAll());
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        PreferenceManager.Editor editor = new PreferenceManager(context).edit().clear();
+        for (Map.Entry<String, ?> entry : saved.entrySet()) {
+            if (entry.getValue() instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) entry.getValue());
+            } else if (entry.getValue() instanceof String) {
+                editor.putString(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        editor.apply();
+        flush();
+    }
+
+    /**
+     * The four writes of a sign-in as they were made before the batch API, each with an editor of its own.
+     */
+    @Test
+    public void signInBurst_commitPerKey() {
+        SharedPreferences preferences = preferences();
+        BenchmarkState state = benchmarkRule.getState();
+        int signIn = 0;
+        while (state.keepRunning()) {
+            String userId = "user" + signIn++; // A new value every time, so that every commit writes to disk
+            preferences.edit().putBoolean(Constants.KEY_IS_SIGNED_IN, true).apply();
+            preferences.edit().putString(Constants.KEY_USER_ID, userId).apply();
+            preferences.edit().putString(Constants.KEY_NAME, USER_NAME + signIn).apply();
+            preferences.edit().putString(Constants.KEY_IMAGE_HASH, IMAGE_HASH + signIn).apply();
+            flush();
+        }
+    }
+
+    /**
+     * The same writes in a single batch, as {@link com.example.chatandroidapp.activities.SignInActivity} makes them.
+     */
+    @Test
+    public void signInBurst_batch() {
+        PreferenceManager preferenceManager = new PreferenceManager(context);
+        BenchmarkState state = benchmarkRule.getState();
+        int signIn = 0;
+        while (state.keepRunning()) {
+            String userId = "user" + signIn++;
+            preferenceManager.edit()
+                    .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                    .putString(Constants.KEY_USER_ID, userId)
+                    .putString(Constants.KEY_NAME, USER_NAME + signIn)
+                    .putString(Constants.KEY_IMAGE_HASH, IMAGE_HASH + signIn)
+                    .apply();
+            flush();
+        }
+    }
+
+    /**
+     * The preload of a signed-in user's preferences holding the Base64 avatar, as before the blob store.
+     */
+    @Test
+    public void preload_inlineAvatar() throws Exception {
+        preload(true);
+    }
+
+    /**
+     * The preload of the same preferences with only the hash of the avatar.
+     */
+    @Test
+    public void preload_avatarHash() throws Exception {
+        preload(false);
+    }
+
+    /**
+     * Loads the same preferences file from disk every iteration, through {@link PreferenceManager#preload}.
+     */
+    private void preload(boolean withInlineAvatar) throws Exception {
+        byte[] file = signedInFile(withInlineAvatar);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            // Deleting is the only way to evict SharedPreferences from its cache, so the file is written back
+            context.deleteSharedPreferences(Constants.KEY_PREFERENCE_NAME);
+            try (FileOutputStream outputStream = new FileOutputStream(preferencesFile())) {
+                outputStream.write(file);
+            }
+            PreferenceManager.resetForTesting();
+            state.resumeTiming();
+
+            PreferenceManager.preload(context).get();
+        }
+    }
+
+    /**
+     * @return The content of the preferences file of a signed-in user.
+     */
+    private static byte[] signedInFile(boolean withInlineAvatar) throws IOException {
+        SharedPreferences.Editor editor = preferences().edit().clear()
+                .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                .putString(Constants.KEY_USER_ID, "user00042")
+                .putString(Constants.KEY_NAME, USER_NAME)
+                .putString(Constants.KEY_EMAIL, "ada@example.com")
+                .putString(Constants.KEY_IMAGE_HASH, IMAGE_HASH);
+        if (withInlineAvatar) {
+            editor.putString(Constants.KEY_IMAGE, Fixtures.encodedAvatar());
+        }
+        editor.commit();
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (FileInputStream inputStream = new FileInputStream(preferencesFile())) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = inputStream.read(buffer)) != -1; ) {
+                content.write(buffer, 0, read);
+            }
+        }
+        return content.toByteArray();
+    }
+
+    private static File preferencesFile() {
+        return new File(new File(context.getDataDir(), "shared_prefs"), Constants.KEY_PREFERENCE_NAME + ".xml");
+    }
+
+    private static SharedPreferences preferences() {
+        return context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Waits for the disk writes queued so far: an empty commit writes nothing but runs after them.
+     */
+    private static void flush() {
+        preferences().edit().commit();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.database.ChatDatabase;
+import com.example.chatandroidapp.database.UserStore;
+import com.example.chatandroidapp.firebase.Directory;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the mapping of stored users to {@link User}, which replaced the mapping of every document
+ * of the Users collection on each opening of the user list. The users live in a database of their own,
+ * deleted afterwards, so that the directory of the app is left as it was.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserMappingBenchmark {
+
+    private static final String DATABASE_NAME = "benchmark_mapping.db";
+    private static final int LOCAL_USERS = 10_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static ChatDatabase chatDatabase;
+    private static UserStore userStore;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        chatDatabase = ChatDatabase.openForTesting(context, DATABASE_NAME);
+        userStore = new UserStore(chatDatabase);
+        List<User> users = Fixtures.users(LOCAL_USERS);
+        userStore.upsert(users, new ArrayList<>(Collections.nCopies(users.size(), 0L)));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        chatDatabase.close();
+        InstrumentationRegistry.getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * One directory shard read from Firestore, the unit of the first load of the directory.
+     */
+    @Test
+    public void mapDirectoryShard() {
+        Map<String, Object> entries = Fixtures.shardEntries();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Directory.toUsers(entries);
+        }
+    }
+
+    /**
+     * The first page of the user list, read from the local directory.
+     */
+    @Test
+    public void readLocalDirectoryPage() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            userStore.getUsers(Constants.USERS_PAGE_SIZE, null);
+        }
+    }
+
+    /**
+     * A search of the local directory by name prefix.
+     */
+    @Test
+    public void searchLocalDirectory() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            userStore.search("Ada", Constants.USERS_PAGE_SIZE, null);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.database.ChatDatabase;
+import com.example.chatandroidapp.database.UserStore;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.Constants;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the searches of the user list over a directory of 100,000 users, which must each take under
+ * one frame, 16 ms, to keep up with typing. The directory lives in a database of its own, deleted afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserSearchBenchmark {
+
+    private static final String DATABASE_NAME = "benchmark_search.db";
+    private static final int USERS = 100_000;
+    private static final int BATCH_SIZE = 1_000; // Users per transaction while seeding
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static ChatDatabase chatDatabase;
+    private static UserStore userStore;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        chatDatabase = ChatDatabase.openForTesting(context, DATABASE_NAME);
+        userStore = new UserStore(chatDatabase);
+
+        List<User> users = Fixtures.users(USERS);
+        List<Long> updatedAt = new ArrayList<>(Collections.nCopies(BATCH_SIZE, 0L));
+        for (int start = 0; start < users.size(); start += BATCH_SIZE) {
+            userStore.upsert(users.subList(start, start + BATCH_SIZE), updatedAt);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        chatDatabase.close();
+        InstrumentationRegistry.getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * The first letter typed, matching a large share of the directory.
+     */
+    @Test
+    public void searchFirstLetter() {
+        search("a");
+    }
+
+    /**
+     * A first name, filled from the range of names starting with it.
+     */
+    @Test
+    public void searchFirstName() {
+        search("Jo");
+    }
+
+    /**
+     * A last name, which no name starts with: every result comes from the full-text index.
+     */
+    @Test
+    public void searchLastName() {
+        search("hopper");
+    }
+
+    /**
+     * A full name, matching a few hundred users.
+     */
+    @Test
+    public void searchFullName() {
+        search("Grace Hopper");
+    }
+
+    /**
+     * Part of an email, matching thousands of users whose names are spread over the whole directory.
+     */
+    @Test
+    public void searchEmail() {
+        search("user12");
+    }
+
+    /**
+     * Text matching nobody.
+     */
+    @Test
+    public void searchNoMatch() {
+        search("zqx");
+    }
+
+    /**
+     * A page read halfway down the directory, which must cost as much as the first one.
+     */
+    @Test
+    public void readPageHalfwayDown() {
+        User middle = userStore.getUsers(USERS / 2, null).get(USERS / 2 - 1);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            userStore.getUsersFrom(middle, false, Constants.USERS_PAGE_SIZE, null);
+        }
+    }
+
+    private void search(String query) {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            userStore.search(query, Constants.USERS_WINDOW_SIZE, null);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chatandroidapp.microbenchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.chatandroidapp.R;
+import com.example.chatandroidapp.adapters.UsersAdapter;
+import com.example.chatandroidapp.module.User;
+import com.example.chatandroidapp.utilities.AvatarCache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Measures the binding of a row of the user list on the main thread, the work done for each row
+ * coming on screen while scrolling.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UsersAdapterBenchmark {
+
+    private static final int ROWS = 50; // Bound in turn, so that each bind changes the row's content
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private RecyclerView.Adapter<RecyclerView.ViewHolder> adapter;
+    private RecyclerView.ViewHolder holder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                R.style.Theme_ChatAndroidApp);
+        List<User> users = Fixtures.users(ROWS);
+
+        // Avatars already in memory, as for rows scrolled back into view
+        AvatarCache avatarCache = AvatarCache.getInstance(context);
+        for (User user : users) {
+            Bitmap avatar = Bitmap.createBitmap(Fixtures.AVATAR_VIEW_PIXELS, Fixtures.AVATAR_VIEW_PIXELS,
+                    Bitmap.Config.ARGB_8888);
+            avatarCache.putInMemory(AvatarCache.keyOf(user.id, user.imageHash), avatar);
+        }
+
+        UsersAdapter usersAdapter = new UsersAdapter(user -> {
+        });
+        // The first list is applied right away, without a diff
+        usersAdapter.submitList(users);
+        adapter = (RecyclerView.Adapter<RecyclerView.ViewHolder>) (RecyclerView.Adapter<?>) usersAdapter;
+        holder = adapter.createViewHolder(new FrameLayout(context), 0);
+        holder.itemView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindRowWithCachedAvatar() {
+        BenchmarkState state = benchmarkRule.getState();
+        int position = 0;
+        while (state.keepRunning()) {
+            adapter.bindViewHolder(holder, position);
+            position = (position + 1) % ROWS;
+        }
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Chat Android App"
 include(":app")
+include(":microbenchmark")
+include(":macrobenchmark")
  
\ No newline at end of file